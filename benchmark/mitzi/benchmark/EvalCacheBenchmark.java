@@ -0,0 +1,135 @@
+package mitzi.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import mitzi.EvalCache;
+import mitzi.GameState;
+import mitzi.MitziBrain;
+import mitzi.Perft;
+import mitzi.ResultCache;
+
+/**
+ * Measures the effect of the <code>EvalCache</code> on a search with fixed
+ * depth. Every position of <code>Perft.SUITE_FENS</code> is searched once
+ * with the cache disabled and once with the cache enabled. The evaluation does
+ * not depend on the cache, so a single thread visits the same nodes in both
+ * searches and only the time differs. The Transposition Table and the
+ * EvalCache are cleared before each search.
+ *
+ * Usage:
+ *
+ * <pre>
+ * java mitzi.benchmark.EvalCacheBenchmark [-bitboards] [depth]
+ * </pre>
+ */
+public final class EvalCacheBenchmark {
+
+	/**
+	 * the default depth of the searches
+	 */
+	public static final int DEFAULT_DEPTH = 6;
+
+	private EvalCacheBenchmark() {
+	}
+
+	/**
+	 * @return a stream, which discards the output
+	 */
+	private static PrintStream nullStream() {
+		return new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+	}
+
+	/**
+	 * searches a position with fixed depth and without UCI output.
+	 *
+	 * @param fen
+	 *            the position
+	 * @param depth
+	 *            the depth of the search
+	 * @param bitboards
+	 *            true for <code>BitboardPosition</code>, false for
+	 *            <code>Position</code>
+	 * @return the brain after the search, for the statistics
+	 */
+	private static MitziBrain search(String fen, int depth, boolean bitboards) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(fen);
+		ResultCache.clear();
+		EvalCache.clear();
+
+		MitziBrain brain = new MitziBrain();
+		brain.setBitboards(bitboards);
+		brain.setUCIOutput(false);
+		brain.set(game_state);
+		brain.search(0, 0, depth, false, null);
+		return brain;
+	}
+
+	/**
+	 * runs the searches on the standard positions with the given size of the
+	 * EvalCache and prints the results.
+	 *
+	 * @param megabytes
+	 *            the size of the EvalCache, 0 to disable it
+	 * @param depth
+	 *            the depth of the searches
+	 * @param bitboards
+	 *            true for <code>BitboardPosition</code>, false for
+	 *            <code>Position</code>
+	 * @param out
+	 *            the stream for the output
+	 * @return the total time in milliseconds
+	 */
+	public static long runSuite(int megabytes, int depth, boolean bitboards,
+			PrintStream out) {
+		int old_size = EvalCache.getSize();
+		EvalCache.setSize(megabytes);
+		long total_nodes = 0, total_time = 0, probes = 0, hits = 0;
+		try {
+			for (String fen : Perft.SUITE_FENS) {
+				long time = System.currentTimeMillis();
+				MitziBrain brain = search(fen, depth, bitboards);
+				time = System.currentTimeMillis() - time;
+
+				total_nodes += brain.getNodes();
+				total_time += time;
+				probes += brain.getEvalCacheProbes();
+				hits += brain.getEvalCacheHits();
+			}
+		} finally {
+			EvalCache.setSize(old_size);
+		}
+
+		long permill = probes == 0 ? 0 : hits * 1000 / probes;
+		out.println("Eval Cache " + megabytes + " MB: " + total_nodes
+				+ " nodes, " + total_time + " ms, hit rate " + permill / 10
+				+ "." + permill % 10 + "% of " + probes + " evaluations");
+		return total_time;
+	}
+
+	public static void main(String[] args) {
+		boolean bitboards = false;
+		int depth = DEFAULT_DEPTH;
+		for (String arg : args)
+			if (arg.equals("-bitboards"))
+				bitboards = true;
+			else
+				depth = Integer.parseInt(arg);
+
+		int megabytes = Math.max(EvalCache.getSize(), 1);
+
+		// warm up the JIT compiler, the results are not printed
+		runSuite(megabytes, depth, bitboards, nullStream());
+
+		long time_without = runSuite(0, depth, bitboards, System.out);
+		long time_with = runSuite(megabytes, depth, bitboards, System.out);
+		if (time_without > 0)
+			System.out.println("Time with cache: " + time_with * 100
+					/ time_without + "% of the time without cache");
+	}
+}
@@ -0,0 +1,200 @@
+package mitzi.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mitzi.AnalysisResult;
+import mitzi.BasicMoveComparator;
+import mitzi.BitboardPosition;
+import mitzi.BoardAnalyzer;
+import mitzi.Flag;
+import mitzi.GameState;
+import mitzi.IMove;
+import mitzi.IPosition;
+import mitzi.MitziBrain;
+import mitzi.MoveHelper;
+import mitzi.ResultCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the hot paths of the engine: the move generation,
+ * doMove/undoMove, the check detection, the static evaluation, the
+ * transposition table, the move sorting and a fixed depth search.
+ *
+ * The benchmarks of a position are run for every FEN of the corpus on
+ * <code>Position</code> and on <code>BitboardPosition</code>. An operation
+ * covers all legal moves of the position, except for generateMoves,
+ * getPossibleMoves and sortMoves. getPossibleMoves, isCheckPosition and eval0
+ * are cached by the position, so each operation includes a doMove/undoMove
+ * pair, which is measured on its own as well.
+ *
+ * Usage, see benchmark/pom.xml:
+ *
+ * <pre>
+ * java -jar benchmark/target/benchmarks.jar HotPathBenchmark -prof gc
+ * </pre>
+ *
+ * The allocated bytes per operation are reported by the GC profiler as
+ * gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HotPathBenchmark {
+
+	/**
+	 * the depth of the search benchmark
+	 */
+	private static final int SEARCH_DEPTH = 3;
+
+	/**
+	 * a position of the corpus in one of the board representations.
+	 */
+	@State(Scope.Thread)
+	public static class Corpus {
+
+		/**
+		 * the starting position, three perft positions with castling, en
+		 * passant and promotions and three middle game positions
+		 */
+		@Param({ "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+				"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+				"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+				"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+				"1qr3k1/p2nbppp/bp2p3/3p4/3P4/1P2PNP1/P2Q1PBP/1N2R1K1 b - - 0 1",
+				"2r3qk/p5p1/1n3p1p/4PQ2/8/3B4/5P1P/3R2K1 w - - 0 1",
+				"r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8" })
+		public String fen;
+
+		/**
+		 * true for <code>BitboardPosition</code>, false for
+		 * <code>Position</code>
+		 */
+		@Param({ "false", "true" })
+		public boolean bitboards;
+
+		IPosition position;
+
+		/**
+		 * the legal moves of the position
+		 */
+		List<IMove> moves;
+
+		@Setup
+		public void setUp() {
+			GameState game_state = new GameState();
+			game_state.setToFEN(fen);
+			position = bitboards ? new BitboardPosition(
+					game_state.getPosition()) : game_state.getPosition()
+					.returnCopy();
+			moves = new ArrayList<IMove>(position.getPossibleMoves());
+		}
+	}
+
+	private final int[] buffer = new int[MoveHelper.MAX_MOVES];
+
+	private final BoardAnalyzer analyzer = new BoardAnalyzer();
+
+	private final AnalysisResult result = new AnalysisResult(0, false, false,
+			0, 0, Flag.EXACT, null);
+
+	private long key = 0x9E3779B97F4A7C15L;
+
+	@Benchmark
+	public int generateMoves(Corpus c) {
+		return c.position.generateMoves(buffer);
+	}
+
+	@Benchmark
+	public List<IMove> getPossibleMoves(Corpus c) {
+		IMove move = c.moves.get(0);
+		c.position.doMove(move);
+		c.position.undoMove(move);
+		return c.position.getPossibleMoves();
+	}
+
+	@Benchmark
+	public void doMoveUndoMove(Corpus c) {
+		for (IMove move : c.moves) {
+			c.position.doMove(move);
+			c.position.undoMove(move);
+		}
+	}
+
+	@Benchmark
+	public void isCheckAfterMove(Corpus c, Blackhole blackhole) {
+		for (IMove move : c.moves)
+			blackhole.consume(c.position.isCheckAfterMove(move));
+	}
+
+	@Benchmark
+	public void isCheckPosition(Corpus c, Blackhole blackhole) {
+		for (IMove move : c.moves) {
+			c.position.doMove(move);
+			blackhole.consume(c.position.isCheckPosition());
+			c.position.undoMove(move);
+		}
+	}
+
+	@Benchmark
+	public void eval0(Corpus c, Blackhole blackhole) {
+		for (IMove move : c.moves) {
+			c.position.doMove(move);
+			blackhole.consume(analyzer.eval0(c.position));
+			c.position.undoMove(move);
+		}
+	}
+
+	@Benchmark
+	public List<IMove> sortMoves(Corpus c) {
+		List<IMove> list = new ArrayList<IMove>(c.moves);
+		Collections.sort(list, new BasicMoveComparator(c.position));
+		return list;
+	}
+
+	@Benchmark
+	public AnalysisResult resultCache() {
+		// a simple xorshift, such that the keys spread over the table
+		key ^= key << 13;
+		key ^= key >>> 7;
+		key ^= key << 17;
+		ResultCache.setResult(key, result);
+		return ResultCache.getResult(key);
+	}
+
+	/**
+	 * searches the position with a new brain and an empty transposition
+	 * table. The search runs in its own threads.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IMove search(Corpus c) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(c.fen);
+		ResultCache.clear();
+		MitziBrain brain = new MitziBrain();
+		// the UCI output is not of interest here
+		brain.setUCIOutput(false);
+		brain.setBitboards(c.bitboards);
+		brain.set(game_state);
+		return brain.search(0, 0, SEARCH_DEPTH, false, null);
+	}
+}
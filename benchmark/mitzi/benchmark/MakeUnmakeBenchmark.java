@@ -0,0 +1,93 @@
+package mitzi.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import mitzi.GameState;
+import mitzi.IMove;
+import mitzi.IPosition;
+
+/**
+ * Measures the throughput of <code>Position.doMove</code> followed by
+ * <code>Position.undoMove</code> and the number of bytes allocated per
+ * make/unmake pair. All legal moves of a few test positions are made and
+ * unmade repeatedly, the move generation is not measured.
+ *
+ * Usage: <code>java mitzi.benchmark.MakeUnmakeBenchmark [iterations]</code>
+ */
+public class MakeUnmakeBenchmark {
+
+	/**
+	 * the test positions, containing castling, en passant and promotions.
+	 */
+	private static final String[] FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8" };
+
+	/**
+	 * the number of warm up rounds before measuring
+	 */
+	private static final int WARMUP_ROUNDS = 3;
+
+	/**
+	 * the number of measured rounds
+	 */
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+		List<IPosition> positions = new ArrayList<IPosition>();
+		List<List<IMove>> moves = new ArrayList<List<IMove>>();
+		for (String fen : FENS) {
+			GameState game_state = new GameState();
+			game_state.setToFEN(fen);
+			IPosition position = game_state.getPosition().returnCopy();
+			positions.add(position);
+			moves.add(new ArrayList<IMove>(position.getPossibleMoves()));
+		}
+
+		for (int round = 0; round < WARMUP_ROUNDS; round++)
+			run(positions, moves, iterations / 10);
+
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread_id = Thread.currentThread().getId();
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long bytes = bean.getThreadAllocatedBytes(thread_id);
+			long time = System.nanoTime();
+			long pairs = run(positions, moves, iterations);
+			time = System.nanoTime() - time;
+			bytes = bean.getThreadAllocatedBytes(thread_id) - bytes;
+
+			System.out.printf("round %d: %,d make/unmake per second, %.1f bytes per make/unmake%n",
+					round + 1, pairs * 1000000000L / time, (double) bytes / pairs);
+		}
+	}
+
+	/**
+	 * makes and unmakes all moves of all positions.
+	 *
+	 * @return the number of make/unmake pairs
+	 */
+	private static long run(List<IPosition> positions, List<List<IMove>> moves,
+			int iterations) {
+		long pairs = 0;
+		for (int i = 0; i < iterations; i++) {
+			for (int p = 0; p < positions.size(); p++) {
+				IPosition position = positions.get(p);
+				for (IMove move : moves.get(p)) {
+					position.doMove(move);
+					position.undoMove(move);
+					pairs++;
+				}
+			}
+		}
+		return pairs;
+	}
+}
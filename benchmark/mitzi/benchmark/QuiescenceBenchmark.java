@@ -0,0 +1,113 @@
+package mitzi.benchmark;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import mitzi.BitboardPosition;
+import mitzi.BoardAnalyzer;
+import mitzi.EvalCache;
+import mitzi.GameState;
+import mitzi.IMove;
+import mitzi.IPosition;
+import mitzi.MateScores;
+import mitzi.Perft;
+import mitzi.ResultCache;
+
+/**
+ * Measures the speed of the quiescence search of <code>BoardAnalyzer</code>.
+ * In each position of <code>Perft.SUITE_FENS</code> the quiescence search is
+ * started with a full window after every legal move and every legal reply.
+ * The Transposition Table and the EvalCache are cleared before each position.
+ *
+ * Usage:
+ *
+ * <pre>
+ * java mitzi.benchmark.QuiescenceBenchmark [-bitboards]
+ * </pre>
+ */
+public final class QuiescenceBenchmark {
+
+	private QuiescenceBenchmark() {
+	}
+
+	/**
+	 * runs the quiescence search after all legal sequences of two moves.
+	 *
+	 * @param position
+	 *            the position, which is restored afterwards
+	 * @param analyzer
+	 *            the analyzer, which counts the nodes
+	 * @throws InterruptedException
+	 *             if the thread is interrupted
+	 */
+	public static void run(IPosition position, BoardAnalyzer analyzer)
+			throws InterruptedException {
+		for (IMove move : new ArrayList<IMove>(position.getPossibleMoves())) {
+			position.doMove(move);
+			for (IMove reply : new ArrayList<IMove>(
+					position.getPossibleMoves())) {
+				position.doMove(reply);
+				analyzer.evalBoard(position, MateScores.NEG_INF,
+						MateScores.POS_INF);
+				position.undoMove(reply);
+			}
+			position.undoMove(move);
+		}
+	}
+
+	/**
+	 * runs the benchmark on the standard positions and prints the results.
+	 *
+	 * @param bitboards
+	 *            true for <code>BitboardPosition</code>, false for
+	 *            <code>Position</code>
+	 * @param out
+	 *            the stream for the output
+	 * @return the total number of quiescence nodes
+	 * @throws InterruptedException
+	 *             if the thread is interrupted
+	 */
+	public static long runSuite(boolean bitboards, PrintStream out)
+			throws InterruptedException {
+		long total_nodes = 0, total_time = 0;
+		for (String fen : Perft.SUITE_FENS) {
+			GameState game_state = new GameState();
+			game_state.setToFEN(fen);
+			IPosition position = game_state.getPosition().returnCopy();
+			if (bitboards)
+				position = new BitboardPosition(position);
+
+			ResultCache.clear();
+			EvalCache.clear();
+			BoardAnalyzer analyzer = new BoardAnalyzer();
+			long time = System.nanoTime();
+			run(position, analyzer);
+			time = System.nanoTime() - time;
+
+			long nodes = analyzer.eval_counter_seldepth;
+			total_nodes += nodes;
+			total_time += time;
+			out.println(fen + ": " + nodes + " nodes, " + time / 1000000
+					+ " ms, nps: " + nodesPerSecond(nodes, time));
+		}
+		out.println("Total: " + total_nodes + " nodes, " + total_time
+				/ 1000000 + " ms, nps: "
+				+ nodesPerSecond(total_nodes, total_time));
+		return total_nodes;
+	}
+
+	/**
+	 * @return the nodes per second
+	 */
+	private static long nodesPerSecond(long nodes, long nano_time) {
+		return nano_time == 0 ? 0 : nodes * 1000000000L / nano_time;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		boolean bitboards = false;
+		for (String arg : args)
+			if (arg.equals("-bitboards"))
+				bitboards = true;
+		runSuite(bitboards, System.out);
+	}
+}
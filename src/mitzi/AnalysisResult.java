@@ -72,15 +72,6 @@ public final class AnalysisResult {
 	 */
 	public IMove best_move;
 
-	/**
-	 * Since AnalysisResults are stored in the Transposition Tables
-	 * (ResultCache), it is important to ensure that the AnalysisResult
-	 * corresponding to the actual position should be used, if there are
-	 * collisions with hashvalues. Therefore a second one (this one) is created
-	 * to identify the position and these problems unlikely.
-	 **/
-	public long hashvalue;
-
 	/**
 	 * A sorted list of the better moves in reverse order, i.e. the last moves
 	 * are better, then the first ones.
@@ -97,9 +88,9 @@ public final class AnalysisResult {
 		this.flag = flag;
 	}
 
-	AnalysisResult(int score, Boolean is_stalemate, boolean needs_deeper,
+	public AnalysisResult(int score, Boolean is_stalemate, boolean needs_deeper,
 			int plys_to_eval0, int plys_to_seldepth, Flag flag,
-			IMove best_move, long hashvalue) {
+			IMove best_move) {
 		this.score = (short) score;
 		this.is_stalemate = is_stalemate;
 		this.needs_deeper = needs_deeper;
@@ -107,23 +98,20 @@ public final class AnalysisResult {
 		this.plys_to_seldepth = (byte) plys_to_seldepth;
 		this.flag = flag;
 		this.best_move = best_move;
-		this.hashvalue = hashvalue;
 	}
 
 	/**
-	 * computes a copy of the analysis result without the list of good moves and
-	 * the hashvalue.
+	 * computes a copy of the analysis result without the list of good moves.
 	 * 
 	 * @return a copy without some elements.
 	 */
 	public AnalysisResult tinyCopy() {
 		return new AnalysisResult(score, is_stalemate, needs_deeper,
-				plys_to_eval0, plys_to_seldepth, null, best_move, 0);
+				plys_to_eval0, plys_to_seldepth, null, best_move);
 	}
 
 	/**
-	 * sets all values of analysis result except the list of good moves and the
-	 * hashvalue.
+	 * sets all values of analysis result except the list of good moves.
 	 * 
 	 * @param score
 	 *            the new score
@@ -152,8 +140,7 @@ public final class AnalysisResult {
 	}
 
 	/**
-	 * sets all values of analysis result except the list of good moves and the
-	 * hashvalue.
+	 * sets all values of analysis result except the list of good moves.
 	 * 
 	 * @param ar
 	 *            the new analysis result
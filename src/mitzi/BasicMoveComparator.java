@@ -45,13 +45,29 @@ public class BasicMoveComparator implements Comparator<IMove> {
 	 * @param move the current move
 	 */
 	private void computeValue(IMove move) {
+		move_values.put(move,
+				getValue(board, move.getFromSquare(), move.getToSquare()));
+	}
+
+	/**
+	 * Grades a move by some heuristics, without allocating any objects.
+	 * 
+	 * @param board
+	 *            the position, where the move is played
+	 * @param src
+	 *            the source square of the move
+	 * @param dest
+	 *            the destination square of the move
+	 * @return the value of the move, higher is better
+	 */
+	static int getValue(IPosition board, int src, int dest) {
 		int value = 0;
 
 		// moved figure
-		Piece src_piece = board.getPieceFromBoard(move.getFromSquare());
+		Piece src_piece = board.getPieceFromBoard(src);
 
 		// captured figure
-		Piece dest_piece = board.getPieceFromBoard(move.getToSquare());
+		Piece dest_piece = board.getPieceFromBoard(dest);
 
 		if (dest_piece != null) {
 			// try to get advantage in exchange
@@ -62,10 +78,10 @@ public class BasicMoveComparator implements Comparator<IMove> {
 		value += piece_values[src_piece.ordinal()];
 
 		// move to the center (but away with the king)
-		value += (center_values[move.getToSquare()] - center_values[move
-				.getFromSquare()]) * (src_piece == Piece.KING ? -1 : 1);
+		value += (center_values[dest] - center_values[src])
+				* (src_piece == Piece.KING ? -1 : 1);
 
-		move_values.put(move, value);
+		return value;
 	}
 
 	/**
@@ -0,0 +1,1449 @@
+package mitzi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An implementation of IPosition using bitboards. For every side and piece the
+ * occupied squares are stored in a <code>long</code> (12 bitboards), together
+ * with the occupancy of each side and of the whole board. The attacks are
+ * looked up in the precomputed tables of <code>Bitboards</code>, the sliding
+ * pieces use magic bitboards. Additionally a mailbox (like in
+ * <code>Position</code>) is kept, such that <code>getPieceFromBoard</code> is
+ * a simple array access.
+ *
+ * The bits are indexed like the arrays of <code>Position</code>, so the
+ * Zobrist keys of both implementations coincide and the transposition table
+ * can be shared. The behavior of all methods is the same as in
+ * <code>Position</code>, which is checked by perft in
+ * <code>BitboardPositionTest</code>.
+ *
+ */
+public class BitboardPosition implements IPosition {
+
+	/**
+	 * the possible promotions, the most valuable first
+	 */
+	private static final Piece[] PROMOTIONS = { Piece.QUEEN, Piece.KNIGHT,
+			Piece.ROOK, Piece.BISHOP };
+
+	/**
+	 * cache of <code>Piece.values()</code>
+	 */
+	private static final Piece[] PIECES = Piece.values();
+
+	private static final String INITIAL_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+
+	/**
+	 * the initial number of plies of the legality cache, see isLegal()
+	 */
+	private static final int LEGALITY_CACHE_SIZE = 128;
+
+	/**
+	 * the bitboards of the pieces, indexed by 6 * side.ordinal() +
+	 * piece.ordinal()
+	 */
+	private long[] pieces = new long[12];
+
+	/**
+	 * the bitboards of the squares occupied by each side, indexed by
+	 * side.ordinal()
+	 */
+	private long[] occupied_by_side = new long[2];
+
+	/**
+	 * the bitboard of all occupied squares
+	 */
+	private long occupied;
+
+	/**
+	 * the side on each square, the 65th entry is always null.
+	 */
+	private Side[] side_board = new Side[65];
+
+	/**
+	 * the piece on each square, the 65th entry is always null.
+	 */
+	private Piece[] piece_board = new Piece[65];
+
+	/**
+	 * squares c1, g1, c8 and g8 in ICCF numeric notation, see
+	 * <code>Position</code>. set to -1 if castling not allowed.
+	 */
+	private int[] castling = { -1, -1, -1, -1 };
+
+	/**
+	 * the square of the en_passant_target, -1 if none.
+	 */
+	private int en_passant_target = -1;
+
+	/**
+	 * the side, which has to move
+	 */
+	private Side active_color;
+
+	/**
+	 * contains the information about the value of the position.
+	 */
+	private AnalysisResult analysis_result = null;
+
+	/**
+	 * This is the number of halfmoves since the last pawn advance or capture.
+	 */
+	private int half_move_clock;
+
+	/**
+	 * the Zobrist key of the position, see <code>Zobrist</code>.
+	 */
+	private long zobrist_key;
+
+	/**
+	 * the Zobrist key of the pawns only, see <code>Position</code>.
+	 */
+	private long pawn_key;
+
+	/**
+	 * the sums of the middlegame and endgame values and of the phase values of
+	 * all pieces, see <code>PieceSquareTables</code>.
+	 */
+	private int midgame_score, endgame_score, phase;
+
+	/**
+	 * the stack for the information, which cannot be reverted by undoMove.
+	 */
+	private IrreversibleMoveStack irr_move_stack = new IrreversibleMoveStack();
+
+	// The following class members are used to prevent multiple computations
+	/**
+	 * caching of the possible moves
+	 */
+	private List<IMove> possible_moves = new ArrayList<IMove>(50);
+
+	/**
+	 * true if, the possible moves were not computed for this position.
+	 */
+	private boolean possible_moves_is_null = true;
+
+	private Boolean pseudolegal_moves;
+
+	/**
+	 * caching if the current position is check.
+	 */
+	private Boolean is_check;
+
+	/**
+	 * caching if the current position is mate.
+	 */
+	private Boolean is_mate;
+
+	/**
+	 * caching if the current position is stalemate.
+	 */
+	private Boolean is_stale_mate;
+
+	/**
+	 * caching of the sets of occupied squares, the key is 10*side.ordinal +
+	 * piece.ordinal
+	 */
+	private Map<Integer, Set<Integer>> occupied_squares_by_color_and_type = new HashMap<Integer, Set<Integer>>();
+
+	private Map<Side, Set<Integer>> occupied_squares_by_color = new HashMap<Side, Set<Integer>>();
+
+	private Map<Piece, Set<Integer>> occupied_squares_by_type = new HashMap<Piece, Set<Integer>>();
+
+	/**
+	 * the buffer for the move generation of the methods returning lists.
+	 */
+	private int[] move_buffer = new int[MoveHelper.MAX_MOVES];
+
+	/**
+	 * the buffer for the moves of a single piece, see getPseudolegalMove().
+	 */
+	private int[] piece_move_buffer = new int[32];
+
+	/**
+	 * the destination squares, which resolve a check: the checking piece and
+	 * the squares between it and the king. All squares, if the king is not in
+	 * check. Computed by computeCheckersAndPins().
+	 */
+	private long evasion_mask;
+
+	/**
+	 * the pinned pieces of the active side
+	 */
+	private long pinned;
+
+	/**
+	 * the squares between the king and the pinning piece (including it) for
+	 * each pinned piece
+	 */
+	private long[] pin_masks = new long[64];
+
+	/**
+	 * the evasion masks and the pinned pieces of the positions on the path
+	 * from the initial position, indexed by the number of moves done, see
+	 * isLegal(). The evasion mask is empty in double check. An entry is
+	 * valid, if <code>legality_computed</code> is set, it is reset by
+	 * resetCache().
+	 */
+	private long[] node_evasions = new long[LEGALITY_CACHE_SIZE];
+	private long[] node_pinned = new long[LEGALITY_CACHE_SIZE];
+	private boolean[] legality_computed = new boolean[LEGALITY_CACHE_SIZE];
+
+	public BitboardPosition() {
+	}
+
+	/**
+	 * creates a bitboard representation of a given position.
+	 *
+	 * @param position
+	 *            the position
+	 */
+	public BitboardPosition(IPosition position) {
+		setToFEN(position.toFEN());
+		half_move_clock = position.getHalfMoveClock();
+	}
+
+	// -----------------------------------------------------------------------------------------
+
+	/**
+	 * Resets and clears the stored class members.
+	 */
+	private void resetCache() {
+		possible_moves.clear();
+		possible_moves_is_null = true;
+		pseudolegal_moves = null;
+		is_check = null;
+		is_mate = null;
+		is_stale_mate = null;
+		analysis_result = null;
+		occupied_squares_by_color_and_type.clear();
+		occupied_squares_by_type.clear();
+		occupied_squares_by_color.clear();
+		int ply = irr_move_stack.size();
+		if (ply < legality_computed.length)
+			legality_computed[ply] = false;
+	}
+
+	/**
+	 * puts a piece on an empty square and updates the Zobrist keys and the
+	 * piece-square score.
+	 *
+	 * @param index
+	 *            the index of the square, see <code>Bitboards</code>
+	 */
+	private void setPiece(int index, Side side, Piece piece) {
+		long bit = 1L << index;
+		pieces[side.ordinal() * 6 + piece.ordinal()] |= bit;
+		occupied_by_side[side.ordinal()] |= bit;
+		occupied |= bit;
+		side_board[index] = side;
+		piece_board[index] = piece;
+		zobrist_key ^= Zobrist.getPieceKey(side, piece, index);
+		if (piece == Piece.PAWN)
+			pawn_key ^= Zobrist.getPieceKey(side, piece, index);
+		midgame_score += PieceSquareTables.getMidgameValue(side, piece, index);
+		endgame_score += PieceSquareTables.getEndgameValue(side, piece, index);
+		phase += PieceSquareTables.getPhaseValue(piece);
+	}
+
+	/**
+	 * removes the piece from an occupied square and updates the Zobrist keys
+	 * and the piece-square score.
+	 *
+	 * @param index
+	 *            the index of the square, see <code>Bitboards</code>
+	 */
+	private void removePiece(int index) {
+		long bit = 1L << index;
+		Side side = side_board[index];
+		Piece piece = piece_board[index];
+		pieces[side.ordinal() * 6 + piece.ordinal()] &= ~bit;
+		occupied_by_side[side.ordinal()] &= ~bit;
+		occupied &= ~bit;
+		side_board[index] = null;
+		piece_board[index] = null;
+		zobrist_key ^= Zobrist.getPieceKey(side, piece, index);
+		if (piece == Piece.PAWN)
+			pawn_key ^= Zobrist.getPieceKey(side, piece, index);
+		midgame_score -= PieceSquareTables.getMidgameValue(side, piece, index);
+		endgame_score -= PieceSquareTables.getEndgameValue(side, piece, index);
+		phase -= PieceSquareTables.getPhaseValue(piece);
+	}
+
+	/**
+	 * computes the Zobrist key of the position from scratch.
+	 *
+	 * @return the Zobrist key
+	 */
+	private long computeZobristKey() {
+		long key = 0;
+		for (int i = 0; i < 64; i++)
+			if (piece_board[i] != null)
+				key ^= Zobrist.getPieceKey(side_board[i], piece_board[i], i);
+		key ^= Zobrist.getCastlingKey(castling);
+		key ^= Zobrist.getEnPassantKey(en_passant_target);
+		if (active_color == Side.BLACK)
+			key ^= Zobrist.BLACK_TO_MOVE;
+		return key;
+	}
+
+	/**
+	 * checks the incrementally updated Zobrist keys, the piece-square score
+	 * and the occupancy against a full recomputation. Only called if assertions are
+	 * enabled (java -ea).
+	 *
+	 * @return true, if everything coincides
+	 */
+	private boolean isValid() {
+		long all = 0;
+		for (int i = 0; i < 12; i++)
+			all |= pieces[i];
+		long pawns = 0;
+		for (int i = 0; i < 64; i++)
+			if (piece_board[i] == Piece.PAWN)
+				pawns ^= Zobrist.getPieceKey(side_board[i], Piece.PAWN, i);
+		return zobrist_key == computeZobristKey() && pawn_key == pawns
+				&& getPieceSquareScore() == PieceSquareTables.evaluate(this)
+				&& all == occupied
+				&& (occupied_by_side[0] | occupied_by_side[1]) == occupied;
+	}
+
+	@Override
+	public BitboardPosition returnCopy() {
+		BitboardPosition newBoard = new BitboardPosition();
+
+		newBoard.active_color = active_color;
+		newBoard.en_passant_target = en_passant_target;
+		System.arraycopy(castling, 0, newBoard.castling, 0, 4);
+
+		System.arraycopy(pieces, 0, newBoard.pieces, 0, 12);
+		System.arraycopy(occupied_by_side, 0, newBoard.occupied_by_side, 0, 2);
+		newBoard.occupied = occupied;
+		System.arraycopy(side_board, 0, newBoard.side_board, 0, 65);
+		System.arraycopy(piece_board, 0, newBoard.piece_board, 0, 65);
+
+		newBoard.zobrist_key = zobrist_key;
+		newBoard.pawn_key = pawn_key;
+		newBoard.midgame_score = midgame_score;
+		newBoard.endgame_score = endgame_score;
+		newBoard.phase = phase;
+		return newBoard;
+	}
+
+	@Override
+	public Side getSideFromBoard(int square) {
+		return side_board[Bitboards.toIndex(square)];
+	}
+
+	@Override
+	public Piece getPieceFromBoard(int square) {
+		return piece_board[Bitboards.toIndex(square)];
+	}
+
+	/**
+	 * returns the opponents side of the actual board
+	 *
+	 * @return the side of the opponent
+	 */
+	public Side getOpponentsColor() {
+		return Side.getOppositeSide(active_color);
+	}
+
+	@Override
+	public AnalysisResult getAnalysisResult() {
+		return analysis_result;
+	}
+
+	@Override
+	public void updateAnalysisResult(AnalysisResult analysis_result) {
+		if (analysis_result == null)
+			throw new NullPointerException();
+
+		if (this.analysis_result == null
+				|| this.analysis_result.compareQualityTo(analysis_result) <= 0) {
+			this.analysis_result = analysis_result;
+		}
+	}
+
+	@Override
+	public void setToInitial() {
+		setToFEN(INITIAL_FEN);
+		half_move_clock = 0;
+	}
+
+	@Override
+	public void setToFEN(String fen) {
+		Arrays.fill(pieces, 0);
+		Arrays.fill(occupied_by_side, 0);
+		occupied = 0;
+		pawn_key = 0;
+		midgame_score = endgame_score = phase = 0;
+		Arrays.fill(side_board, null);
+		Arrays.fill(piece_board, null);
+		Arrays.fill(castling, -1);
+		en_passant_target = -1;
+		irr_move_stack = new IrreversibleMoveStack();
+
+		resetCache();
+
+		String[] fen_parts = fen.split(" ");
+
+		// populate the squares, the first row of the FEN has index 0
+		int index = 0;
+		for (char c : fen_parts[0].toCharArray()) {
+			if (c == '/')
+				continue;
+			if (Character.isDigit(c)) {
+				index += Character.getNumericValue(c);
+				continue;
+			}
+			Side side = Character.isUpperCase(c) ? Side.WHITE : Side.BLACK;
+			switch (Character.toLowerCase(c)) {
+			case 'p':
+				setPiece(index, side, Piece.PAWN);
+				break;
+			case 'r':
+				setPiece(index, side, Piece.ROOK);
+				break;
+			case 'n':
+				setPiece(index, side, Piece.KNIGHT);
+				break;
+			case 'b':
+				setPiece(index, side, Piece.BISHOP);
+				break;
+			case 'q':
+				setPiece(index, side, Piece.QUEEN);
+				break;
+			case 'k':
+				setPiece(index, side, Piece.KING);
+				break;
+			}
+			index++;
+		}
+
+		// set active color
+		active_color = fen_parts[1].equals("b") ? Side.BLACK : Side.WHITE;
+
+		// set possible castling moves
+		for (char c : fen_parts[2].toCharArray()) {
+			switch (c) {
+			case 'K':
+				castling[1] = 71;
+				break;
+			case 'Q':
+				castling[0] = 31;
+				break;
+			case 'k':
+				castling[3] = 78;
+				break;
+			case 'q':
+				castling[2] = 38;
+				break;
+			}
+		}
+
+		// set en passant square
+		if (!fen_parts[3].equals("-"))
+			en_passant_target = SquareHelper.fromString(fen_parts[3]);
+
+		zobrist_key = computeZobristKey();
+	}
+
+	@Override
+	public IPosition doMove_copy(IMove move) {
+		BitboardPosition newBoard = returnCopy();
+		newBoard.half_move_clock = half_move_clock;
+		newBoard.doMove(move);
+		newBoard.irr_move_stack = new IrreversibleMoveStack();
+		return newBoard;
+	}
+
+	@Override
+	public int getEnPassant() {
+		return en_passant_target;
+	}
+
+	@Override
+	public boolean canCastle(int king_to) {
+		return (king_to == 31 && castling[0] != -1)
+				|| (king_to == 71 && castling[1] != -1)
+				|| (king_to == 38 && castling[2] != -1)
+				|| (king_to == 78 && castling[3] != -1);
+	}
+
+	@Override
+	public Boolean colorCanCastle(Side color) {
+		int off = color == Side.WHITE ? 0 : 2;
+		int king = Bitboards.toIndex(color == Side.WHITE ? 51 : 58);
+		Side opp_color = Side.getOppositeSide(color);
+		long occ = occupied & ~(1L << king);
+
+		if (isAttacked(getKingIndex(color), opp_color, occupied, 0))
+			return false;
+
+		// the king moves along the row, on the board the index decreases to
+		// the queen side
+		for (int i = 0; i < 2; i++) {
+			if (castling[i + off] == -1)
+				continue;
+			int step = i == 0 ? -1 : 1;
+			if ((occupied & (1L << (king + step))) == 0
+					&& (occupied & (1L << (king + 2 * step))) == 0
+					&& !isAttacked(king + step, opp_color, occ, 0)
+					&& !isAttacked(king + 2 * step, opp_color, occ, 0))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Set<Integer> getOccupiedSquaresByColor(Side color) {
+		Set<Integer> set = occupied_squares_by_color.get(color);
+		if (set == null) {
+			set = toSquares(occupied_by_side[color.ordinal()]);
+			occupied_squares_by_color.put(color, set);
+		}
+		return set;
+	}
+
+	@Override
+	public Set<Integer> getOccupiedSquaresByType(Piece type) {
+		Set<Integer> set = occupied_squares_by_type.get(type);
+		if (set == null) {
+			set = toSquares(pieces[Side.BLACK.ordinal() * 6 + type.ordinal()]
+					| pieces[Side.WHITE.ordinal() * 6 + type.ordinal()]);
+			occupied_squares_by_type.put(type, set);
+		}
+		return set;
+	}
+
+	@Override
+	public Set<Integer> getOccupiedSquaresByColorAndType(Side color, Piece type) {
+		int value = color.ordinal() * 10 + type.ordinal();
+		Set<Integer> set = occupied_squares_by_color_and_type.get(value);
+		if (set == null) {
+			set = toSquares(pieces[color.ordinal() * 6 + type.ordinal()]);
+			occupied_squares_by_color_and_type.put(value, set);
+		}
+		return set;
+	}
+
+	/**
+	 * @return the set of the squares of a bitboard
+	 */
+	private static Set<Integer> toSquares(long bitboard) {
+		Set<Integer> set = new HashSet<Integer>();
+		while (bitboard != 0) {
+			set.add(Bitboards.toSquare(Long.numberOfTrailingZeros(bitboard)));
+			bitboard &= bitboard - 1;
+		}
+		return set;
+	}
+
+	@Override
+	public int getNumberOfPiecesByColor(Side side) {
+		return Long.bitCount(occupied_by_side[side.ordinal()]);
+	}
+
+	@Override
+	public int getNumberOfPiecesByType(Piece piece) {
+		return Long.bitCount(pieces[Side.BLACK.ordinal() * 6 + piece.ordinal()]
+				| pieces[Side.WHITE.ordinal() * 6 + piece.ordinal()]);
+	}
+
+	@Override
+	public int getNumberOfPiecesByColorAndType(Side color, Piece type) {
+		return Long.bitCount(pieces[color.ordinal() * 6 + type.ordinal()]);
+	}
+
+	@Override
+	public List<IMove> getPossibleMoves() {
+		return getPossibleMoves(false);
+	}
+
+	@Override
+	public List<IMove> getPossibleMoves(boolean pseudolegal) {
+
+		if (possible_moves_is_null) {
+			int n = pseudolegal ? generateMoves(move_buffer)
+					: generateLegalMoves(move_buffer);
+			for (int i = 0; i < n; i++)
+				possible_moves.add(MoveHelper.toMove(move_buffer[i]));
+			pseudolegal_moves = pseudolegal;
+			possible_moves_is_null = false;
+		} else if (!pseudolegal && pseudolegal_moves) {
+			Iterator<IMove> iter = possible_moves.iterator();
+			while (iter.hasNext())
+				if (isCheckAfterMove(iter.next()))
+					iter.remove();
+			pseudolegal_moves = false;
+		}
+
+		return possible_moves;
+	}
+
+	@Override
+	public List<IMove> getPossibleMovesFrom(int square, boolean pseudolegal) {
+		List<IMove> moves = new ArrayList<IMove>(35);
+		int index = Bitboards.toIndex(square);
+		if (index == 64 || side_board[index] != active_color)
+			return moves;
+
+		int n = generateMovesFrom(index, move_buffer, 0, true);
+		if (piece_board[index] == Piece.KING)
+			n = generateCastlings(move_buffer, n);
+		for (int i = 0; i < n; i++)
+			if (pseudolegal || !isCheckAfterMove(move_buffer[i]))
+				moves.add(MoveHelper.toMove(move_buffer[i]));
+		return moves;
+	}
+
+	@Override
+	public List<IMove> getPossibleMovesTo(int square) {
+		List<IMove> result = new ArrayList<IMove>();
+		for (IMove move : getPossibleMoves())
+			if (move.getToSquare() == square)
+				result.add(move);
+		return result;
+	}
+
+	@Override
+	public List<IMove> getPotentialAttackersTo(int square) {
+		List<IMove> result = new ArrayList<IMove>();
+
+		for (Piece p : PIECES)
+			getPotentialAttackersTo(square, p, result);
+
+		return result;
+	}
+
+	@Override
+	public List<IMove> getPotentialAttackersTo(int square, Piece attacking_dir) {
+		List<IMove> result = new ArrayList<IMove>();
+		getPotentialAttackersTo(square, attacking_dir, result);
+		return result;
+	}
+
+	@Override
+	public void getPotentialAttackersTo(int square, Piece attacking_dir,
+			List<IMove> result) {
+
+		int index = Bitboards.toIndex(square);
+		int own = active_color.ordinal() * 6;
+		long attackers;
+
+		switch (attacking_dir) {
+		case PAWN:
+			attackers = Bitboards.pawnAttacks(getOpponentsColor(), index)
+					& pieces[own + Piece.PAWN.ordinal()];
+			break;
+		case KNIGHT:
+			attackers = Bitboards.knightAttacks(index)
+					& pieces[own + Piece.KNIGHT.ordinal()];
+			break;
+		case KING:
+			attackers = Bitboards.kingAttacks(index)
+					& pieces[own + Piece.KING.ordinal()];
+			break;
+		case ROOK:
+			attackers = Bitboards.rookAttacks(index, occupied)
+					& (pieces[own + Piece.ROOK.ordinal()] | pieces[own
+							+ Piece.QUEEN.ordinal()]);
+			break;
+		case BISHOP:
+			attackers = Bitboards.bishopAttacks(index, occupied)
+					& (pieces[own + Piece.BISHOP.ordinal()] | pieces[own
+							+ Piece.QUEEN.ordinal()]);
+			break;
+		default:
+			return;
+		}
+
+		boolean promotes = attacking_dir == Piece.PAWN
+				&& SquareHelper.getRow(square) == SquareHelper.getRowForSide(
+						active_color, 8);
+		while (attackers != 0) {
+			int from = Bitboards.toSquare(Long.numberOfTrailingZeros(attackers));
+			attackers &= attackers - 1;
+			if (isCheckAfterMove(from, square, null))
+				continue;
+			if (promotes) {
+				result.add(new Move(from, square, Piece.QUEEN));
+				result.add(new Move(from, square, Piece.KNIGHT));
+				result.add(new Move(from, square, Piece.BISHOP));
+				result.add(new Move(from, square, Piece.ROOK));
+			} else
+				result.add(new Move(from, square));
+		}
+	}
+
+	@Override
+	public boolean isCheckAfterMove(IMove move) {
+		return isCheckAfterMove(move.getFromSquare(), move.getToSquare(),
+				move.getPromotion());
+	}
+
+	@Override
+	public boolean isCheckAfterMove(int move) {
+		return isCheckAfterMove(MoveHelper.getFromSquare(move),
+				MoveHelper.getToSquare(move), MoveHelper.getPromotion(move));
+	}
+
+	/**
+	 * see <code>isCheckAfterMove(IMove move)</code>. The board is not changed,
+	 * only the occupancy after the move is computed.
+	 */
+	private boolean isCheckAfterMove(int src, int dest, Piece promotion) {
+		int from = Bitboards.toIndex(src);
+		int to = Bitboards.toIndex(dest);
+		Piece piece = piece_board[from];
+
+		long occ = (occupied & ~(1L << from)) | (1L << to);
+		// the captured pieces cannot attack anymore
+		long captured = 1L << to;
+
+		if (piece == Piece.PAWN && dest == en_passant_target) {
+			int capture = Bitboards.toIndex(active_color == Side.WHITE ? dest - 1
+					: dest + 1);
+			captured |= 1L << capture;
+			occ &= ~(1L << capture);
+		} else if (piece == Piece.KING && Math.abs(src - dest) == 20) {
+			int rook_from = Bitboards.toIndex(SquareHelper.getColumn(dest) == 3 ? src - 40
+					: src + 30);
+			occ = (occ & ~(1L << rook_from))
+					| (1L << Bitboards.toIndex((src + dest) / 2));
+		}
+
+		int king = piece == Piece.KING ? to : getKingIndex(active_color);
+		return isAttacked(king, getOpponentsColor(), occ, captured);
+	}
+
+	/**
+	 * @return the index of the king of a side
+	 */
+	private int getKingIndex(Side side) {
+		return Long.numberOfTrailingZeros(pieces[side.ordinal() * 6
+				+ Piece.KING.ordinal()]);
+	}
+
+	/**
+	 * checks if a square is attacked by a side.
+	 *
+	 * @param index
+	 *            the index of the square
+	 * @param attacker
+	 *            the attacking side
+	 * @param occ
+	 *            the occupied squares, blocking the sliding pieces
+	 * @param excluded
+	 *            the squares, whose pieces are ignored (e.g. captured pieces)
+	 * @return true, if a piece of the attacker attacks the square
+	 */
+	private boolean isAttacked(int index, Side attacker, long occ,
+			long excluded) {
+		int a = attacker.ordinal() * 6;
+		long mask = ~excluded;
+
+		// pawns attack in the opposite direction of their moves
+		if ((Bitboards.pawnAttacks(Side.getOppositeSide(attacker), index)
+				& pieces[a + Piece.PAWN.ordinal()] & mask) != 0)
+			return true;
+		if ((Bitboards.knightAttacks(index) & pieces[a + Piece.KNIGHT.ordinal()] & mask) != 0)
+			return true;
+		if ((Bitboards.kingAttacks(index) & pieces[a + Piece.KING.ordinal()] & mask) != 0)
+			return true;
+
+		long queens = pieces[a + Piece.QUEEN.ordinal()];
+		if ((Bitboards.rookAttacks(index, occ)
+				& (pieces[a + Piece.ROOK.ordinal()] | queens) & mask) != 0)
+			return true;
+		return (Bitboards.bishopAttacks(index, occ)
+				& (pieces[a + Piece.BISHOP.ordinal()] | queens) & mask) != 0;
+	}
+
+	@Override
+	public boolean isCheckPosition() {
+		if (is_check == null)
+			is_check = isAttacked(getKingIndex(active_color),
+					getOpponentsColor(), occupied, 0);
+		return is_check.booleanValue();
+	}
+
+	@Override
+	public boolean isMatePosition() {
+		if (is_mate == null)
+			is_mate = getPossibleMoves().isEmpty() && isCheckPosition();
+		return is_mate.booleanValue();
+	}
+
+	@Override
+	public boolean isStaleMatePosition() {
+		if (is_stale_mate == null)
+			is_stale_mate = getPossibleMoves().isEmpty();
+		return is_stale_mate.booleanValue();
+	}
+
+	@Override
+	public boolean isPossibleMove(IMove move) {
+		return getPossibleMoves().contains(move);
+	}
+
+	public String toString() {
+		return toFEN();
+	}
+
+	@Override
+	public String toFEN() {
+		StringBuilder fen = new StringBuilder();
+
+		// piece placement
+		for (int row = 0; row < 8; row++) {
+			int counter = 0;
+			for (int column = 0; column < 8; column++) {
+				int index = row * 8 + column;
+				if (side_board[index] == null) {
+					counter++;
+				} else {
+					if (counter != 0) {
+						fen.append(counter);
+						counter = 0;
+					}
+					fen.append(PieceHelper.toString(side_board[index],
+							piece_board[index]));
+				}
+			}
+			if (counter != 0)
+				fen.append(counter);
+			if (row != 7)
+				fen.append("/");
+		}
+		fen.append(" ");
+
+		// active color
+		fen.append(active_color == Side.WHITE ? "w" : "b");
+		fen.append(" ");
+
+		// castling availability
+		boolean castle_flag = false;
+		if (castling[1] != -1) {
+			fen.append("K");
+			castle_flag = true;
+		}
+		if (castling[0] != -1) {
+			fen.append("Q");
+			castle_flag = true;
+		}
+		if (castling[3] != -1) {
+			fen.append("k");
+			castle_flag = true;
+		}
+		if (castling[2] != -1) {
+			fen.append("q");
+			castle_flag = true;
+		}
+		if (!castle_flag)
+			fen.append("-");
+		fen.append(" ");
+
+		// en passant target square
+		if (en_passant_target == -1)
+			fen.append("-");
+		else
+			fen.append(SquareHelper.toString(en_passant_target));
+
+		return fen.toString();
+	}
+
+	@Override
+	public Side getActiveColor() {
+		return active_color;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (zobrist_key ^ (zobrist_key >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		BitboardPosition other = (BitboardPosition) obj;
+		return Arrays.equals(pieces, other.pieces)
+				&& Arrays.equals(castling, other.castling)
+				&& en_passant_target == other.en_passant_target
+				&& active_color == other.active_color;
+	}
+
+	@Override
+	public int generateMoves(int[] moves) {
+		int n = 0;
+		long own = occupied_by_side[active_color.ordinal()];
+		while (own != 0) {
+			n = generateMovesFrom(Long.numberOfTrailingZeros(own), moves, n,
+					true);
+			own &= own - 1;
+		}
+		return generateCastlings(moves, n);
+	}
+
+	@Override
+	public int generateCaptures(int[] moves) {
+		int n = 0;
+		long own = occupied_by_side[active_color.ordinal()];
+		while (own != 0) {
+			n = generateMovesFrom(Long.numberOfTrailingZeros(own), moves, n,
+					false);
+			own &= own - 1;
+		}
+		return n;
+	}
+
+	@Override
+	public int generateLegalMoves(int[] moves) {
+		int king = getKingIndex(active_color);
+		int checkers = computeCheckersAndPins(king);
+
+		int n = generateMoves(moves);
+		int legal = 0;
+		for (int i = 0; i < n; i++) {
+			int move = moves[i];
+			int from = Bitboards.toIndex(MoveHelper.getFromSquare(move));
+			if (from == king) {
+				// castlings are only generated, if they are legal
+				if (!MoveHelper.isCastling(move) && isCheckAfterMove(move))
+					continue;
+			} else if (checkers > 1) {
+				// only the king can escape a double check
+				continue;
+			} else if (MoveHelper.isEnPassant(move)) {
+				// both pawns leave the row, which may discover a check
+				if (isCheckAfterMove(move))
+					continue;
+			} else {
+				// the move must resolve a check and a pinned piece must stay
+				// on the line of the pin
+				long to = 1L << Bitboards.toIndex(MoveHelper.getToSquare(move));
+				if ((evasion_mask & to) == 0)
+					continue;
+				if ((pinned & 1L << from) != 0 && (pin_masks[from] & to) == 0)
+					continue;
+			}
+			moves[legal++] = move;
+		}
+		return legal;
+	}
+
+	@Override
+	public boolean isLegal(int move) {
+		int ply = getLegalityPly();
+		int king = getKingIndex(active_color);
+		if (!legality_computed[ply]) {
+			// only the king can escape a double check
+			node_evasions[ply] = computeCheckersAndPins(king) > 1 ? 0
+					: evasion_mask;
+			node_pinned[ply] = pinned;
+			legality_computed[ply] = true;
+		}
+
+		int from = Bitboards.toIndex(MoveHelper.getFromSquare(move));
+		if (from == king)
+			// castlings are only generated, if they are legal
+			return MoveHelper.isCastling(move) || !isCheckAfterMove(move);
+		if (node_evasions[ply] == 0)
+			return false;
+		// both pawns of an en passant capture leave the row, a pinned piece
+		// may only move on the line of the pin
+		if (MoveHelper.isEnPassant(move)
+				|| (node_pinned[ply] & 1L << from) != 0)
+			return !isCheckAfterMove(move);
+		return (node_evasions[ply] & 1L << Bitboards.toIndex(MoveHelper
+				.getToSquare(move))) != 0;
+	}
+
+	/**
+	 * @return the ply of the current position in the legality cache, the
+	 *         cache is grown, if necessary.
+	 */
+	private int getLegalityPly() {
+		int ply = irr_move_stack.size();
+		if (ply >= legality_computed.length) {
+			int size = Math.max(2 * legality_computed.length, ply + 1);
+			node_evasions = Arrays.copyOf(node_evasions, size);
+			node_pinned = Arrays.copyOf(node_pinned, size);
+			legality_computed = Arrays.copyOf(legality_computed, size);
+		}
+		return ply;
+	}
+
+	/**
+	 * computes the pieces, which give check to the king of the active side,
+	 * and the pinned pieces of the active side. The results are stored in
+	 * evasion_mask, pinned and pin_masks.
+	 *
+	 * @param king
+	 *            the index of the king of the active side
+	 * @return the number of checking pieces
+	 */
+	private int computeCheckersAndPins(int king) {
+		int a = getOpponentsColor().ordinal() * 6;
+		long queens = pieces[a + Piece.QUEEN.ordinal()];
+		long own = occupied_by_side[active_color.ordinal()];
+
+		// pawns attack in the opposite direction of their moves
+		evasion_mask = (Bitboards.pawnAttacks(active_color, king) & pieces[a
+				+ Piece.PAWN.ordinal()])
+				| (Bitboards.knightAttacks(king) & pieces[a
+						+ Piece.KNIGHT.ordinal()]);
+		int checkers = Long.bitCount(evasion_mask);
+		pinned = 0;
+
+		// the sliding pieces, which would attack the king on an empty board
+		long rooks = Bitboards.rookAttacks(king, 0)
+				& (pieces[a + Piece.ROOK.ordinal()] | queens);
+		long bishops = Bitboards.bishopAttacks(king, 0)
+				& (pieces[a + Piece.BISHOP.ordinal()] | queens);
+		long snipers = rooks | bishops;
+		while (snipers != 0) {
+			int sniper = Long.numberOfTrailingZeros(snipers);
+			long bit = snipers & -snipers;
+			snipers ^= bit;
+
+			// the squares between the king and the sliding piece
+			long between = (rooks & bit) != 0 ? Bitboards.rookAttacks(king,
+					bit) & Bitboards.rookAttacks(sniper, 1L << king)
+					: Bitboards.bishopAttacks(king, bit)
+							& Bitboards.bishopAttacks(sniper, 1L << king);
+			long blockers = between & occupied;
+			if (blockers == 0) {
+				checkers++;
+				evasion_mask |= between | bit;
+			} else if ((blockers & (blockers - 1)) == 0
+					&& (blockers & own) != 0) {
+				pinned |= blockers;
+				pin_masks[Long.numberOfTrailingZeros(blockers)] = between | bit;
+			}
+		}
+
+		if (checkers == 0)
+			evasion_mask = -1L;
+		return checkers;
+	}
+
+	@Override
+	public int getPseudolegalMove(int move) {
+		int index = Bitboards.toIndex(MoveHelper.getFromSquare(move));
+		if (index == 64 || side_board[index] != active_color)
+			return MoveHelper.NO_MOVE;
+
+		int n = generateMovesFrom(index, piece_move_buffer, 0, true);
+		if (piece_board[index] == Piece.KING)
+			n = generateCastlings(piece_move_buffer, n);
+		for (int i = 0; i < n; i++)
+			if (MoveHelper.isSameMove(piece_move_buffer[i], move))
+				return piece_move_buffer[i];
+		return MoveHelper.NO_MOVE;
+	}
+
+	/**
+	 * adds the moves of the piece on a square to a move buffer, without
+	 * castlings.
+	 *
+	 * @param index
+	 *            the index of the square of the piece
+	 * @param quiets
+	 *            false, if only captures and promotions are added
+	 * @return the new number of moves in the buffer
+	 */
+	private int generateMovesFrom(int index, int[] moves, int n,
+			boolean quiets) {
+		long targets;
+		switch (piece_board[index]) {
+		case PAWN:
+			return generatePawnMoves(index, moves, n, quiets);
+		case KNIGHT:
+			targets = Bitboards.knightAttacks(index);
+			break;
+		case BISHOP:
+			targets = Bitboards.bishopAttacks(index, occupied);
+			break;
+		case ROOK:
+			targets = Bitboards.rookAttacks(index, occupied);
+			break;
+		case QUEEN:
+			targets = Bitboards.queenAttacks(index, occupied);
+			break;
+		default:
+			targets = Bitboards.kingAttacks(index);
+			break;
+		}
+
+		int src = Bitboards.toSquare(index);
+		if (quiets)
+			targets &= ~occupied_by_side[active_color.ordinal()];
+		else
+			targets &= occupied_by_side[getOpponentsColor().ordinal()];
+		long captures = targets & occupied;
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			long bit = targets & -targets;
+			targets ^= bit;
+			moves[n++] = MoveHelper.create(src, Bitboards.toSquare(to),
+					(captures & bit) != 0 ? MoveHelper.CAPTURE : 0);
+		}
+		return n;
+	}
+
+	/**
+	 * adds the moves of a pawn to a move buffer.
+	 *
+	 * @param quiets
+	 *            false, if only captures and promotions are added
+	 * @return the new number of moves in the buffer
+	 */
+	private int generatePawnMoves(int index, int[] moves, int n,
+			boolean quiets) {
+		int src = Bitboards.toSquare(index);
+		int dir = active_color == Side.WHITE ? 1 : -1;
+		int row = SquareHelper.getRow(src);
+		boolean promotes = row == (active_color == Side.WHITE ? 7 : 2);
+
+		// steps, one row up is index - 8
+		int step = active_color == Side.WHITE ? -8 : 8;
+		if ((quiets || promotes) && (occupied & (1L << (index + step))) == 0) {
+			n = addPawnMove(moves, n, src, src + dir, promotes, 0);
+			if (quiets && row == (active_color == Side.WHITE ? 2 : 7)
+					&& (occupied & (1L << (index + 2 * step))) == 0)
+				moves[n++] = MoveHelper.create(src, src + 2 * dir, 0);
+		}
+
+		// captures
+		long targets = Bitboards.pawnAttacks(active_color, index);
+		long captures = targets & occupied_by_side[getOpponentsColor().ordinal()];
+		while (captures != 0) {
+			int dest = Bitboards.toSquare(Long.numberOfTrailingZeros(captures));
+			captures &= captures - 1;
+			n = addPawnMove(moves, n, src, dest, promotes, MoveHelper.CAPTURE);
+		}
+		if (en_passant_target != -1
+				&& (targets & (1L << Bitboards.toIndex(en_passant_target))) != 0)
+			moves[n++] = MoveHelper.create(src, en_passant_target,
+					MoveHelper.CAPTURE | MoveHelper.EN_PASSANT);
+		return n;
+	}
+
+	/**
+	 * adds a pawn move to a move buffer, with all promotions if the pawn
+	 * promotes.
+	 *
+	 * @return the new number of moves in the buffer
+	 */
+	private int addPawnMove(int[] moves, int n, int src, int dest,
+			boolean promotes, int flags) {
+		if (promotes)
+			for (Piece promotion : PROMOTIONS)
+				moves[n++] = MoveHelper.create(src, dest, promotion, flags);
+		else
+			moves[n++] = MoveHelper.create(src, dest, flags);
+		return n;
+	}
+
+	/**
+	 * adds the legal castlings to a move buffer. The king must not be in check
+	 * or pass an attacked square.
+	 *
+	 * @return the new number of moves in the buffer
+	 */
+	private int generateCastlings(int[] moves, int n) {
+		int off = active_color == Side.WHITE ? 0 : 2;
+		if (castling[off] == -1 && castling[off + 1] == -1)
+			return n;
+
+		int king = getKingIndex(active_color);
+		Side opp_color = getOpponentsColor();
+		if (isCheckPosition())
+			return n;
+
+		int src = Bitboards.toSquare(king);
+		// queen side: the rook moves from column 1 to 4
+		if (castling[off] != -1
+				&& (occupied & (7L << (king - 3))) == 0
+				&& !isAttacked(king - 1, opp_color, occupied, 0)
+				&& !isAttacked(king - 2, opp_color, occupied, 0))
+			moves[n++] = MoveHelper.create(src, src - 20, MoveHelper.CASTLING);
+		// king side: the rook moves from column 8 to 6
+		if (castling[off + 1] != -1
+				&& (occupied & (3L << (king + 1))) == 0
+				&& !isAttacked(king + 1, opp_color, occupied, 0)
+				&& !isAttacked(king + 2, opp_color, occupied, 0))
+			moves[n++] = MoveHelper.create(src, src + 20, MoveHelper.CASTLING);
+		return n;
+	}
+
+	/**
+	 * checks is a move is a hit. there is no check, that the move is legal!.
+	 *
+	 * @param move
+	 *            the move to be checked
+	 * @return true, if it is a hit, false otherwise
+	 */
+	public boolean isHit(IMove move) {
+		int dest = move.getToSquare();
+		return getSideFromBoard(dest) == getOpponentsColor()
+				|| (getPieceFromBoard(move.getFromSquare()) == Piece.PAWN && dest == en_passant_target);
+	}
+
+	@Override
+	public List<IMove> generateCaptures() {
+		int n = generateCaptures(move_buffer);
+		List<IMove> result = new ArrayList<IMove>(n);
+
+		for (int i = 0; i < n; i++)
+			if (!isCheckAfterMove(move_buffer[i]))
+				result.add(MoveHelper.toMove(move_buffer[i]));
+		return result;
+	}
+
+	@Override
+	public long getZobristKey() {
+		return zobrist_key;
+	}
+
+	@Override
+	public long getPawnKey() {
+		return pawn_key;
+	}
+
+	@Override
+	public int getPieceSquareScore() {
+		return PieceSquareTables.taper(midgame_score, endgame_score, phase);
+	}
+
+	@Override
+	public int getKingPos(Side side) {
+		return Bitboards.toSquare(getKingIndex(side));
+	}
+
+	@Override
+	public void cacheOccupiedSquares() {
+		// the squares are computed from the bitboards on demand.
+	}
+
+	@Override
+	public void doMove(IMove move) {
+		doMove(move.getFromSquare(), move.getToSquare(), move.getPromotion());
+	}
+
+	@Override
+	public void doMove(int move) {
+		doMove(MoveHelper.getFromSquare(move), MoveHelper.getToSquare(move),
+				MoveHelper.getPromotion(move));
+	}
+
+	/**
+	 * see <code>doMove(IMove move)</code>
+	 */
+	private void doMove(int src, int dest, Piece promotion) {
+		int from = Bitboards.toIndex(src);
+		int to = Bitboards.toIndex(dest);
+		Piece piece = piece_board[from];
+		Piece capture = piece_board[to];
+		long old_zobrist_key = zobrist_key;
+
+		boolean resets_half_move_clock = capture != null
+				|| piece == Piece.PAWN;
+
+		if (capture != null)
+			removePiece(to);
+		removePiece(from);
+		setPiece(to, active_color, promotion != null ? promotion : piece);
+
+		// If castling
+		if (piece == Piece.KING && Math.abs(src - dest) == 20) {
+			int rook = Bitboards
+					.toIndex(SquareHelper.getColumn(dest) == 3 ? src - 40
+							: src + 30);
+			removePiece(rook);
+			setPiece(Bitboards.toIndex((src + dest) / 2), active_color,
+					Piece.ROOK);
+		}
+		// If en passant
+		else if (piece == Piece.PAWN && dest == en_passant_target) {
+			removePiece(Bitboards.toIndex(active_color == Side.WHITE ? dest - 1
+					: dest + 1));
+		}
+
+		irr_move_stack.addInfo(half_move_clock, castling, en_passant_target,
+				capture, is_check, old_zobrist_key);
+
+		zobrist_key ^= Zobrist.getCastlingKey(castling)
+				^ Zobrist.getEnPassantKey(en_passant_target);
+
+		// reset half move clock
+		if (resets_half_move_clock)
+			half_move_clock = 0;
+
+		// Update en_passant
+		if (piece == Piece.PAWN && Math.abs(dest - src) == 2)
+			en_passant_target = (dest + src) / 2;
+		else
+			en_passant_target = -1;
+
+		// Update castling
+		if (piece == Piece.KING) {
+			if (active_color == Side.WHITE && src == 51) {
+				castling[0] = -1;
+				castling[1] = -1;
+			} else if (active_color == Side.BLACK && src == 58) {
+				castling[2] = -1;
+				castling[3] = -1;
+			}
+		} else if (piece == Piece.ROOK) {
+			if (active_color == Side.WHITE) {
+				if (src == 81)
+					castling[1] = -1;
+				else if (src == 11)
+					castling[0] = -1;
+			} else {
+				if (src == 88)
+					castling[3] = -1;
+				else if (src == 18)
+					castling[2] = -1;
+			}
+		}
+		if (capture == Piece.ROOK) {
+			if (active_color == Side.BLACK) {
+				if (dest == 81)
+					castling[1] = -1;
+				else if (dest == 11)
+					castling[0] = -1;
+			} else {
+				if (dest == 88)
+					castling[3] = -1;
+				else if (dest == 18)
+					castling[2] = -1;
+			}
+		}
+
+		// Change active_color after move
+		active_color = Side.getOppositeSide(active_color);
+
+		zobrist_key ^= Zobrist.getCastlingKey(castling)
+				^ Zobrist.getEnPassantKey(en_passant_target)
+				^ Zobrist.BLACK_TO_MOVE;
+		assert isValid();
+
+		resetCache();
+	}
+
+	@Override
+	public void undoMove(IMove move) {
+		undoMove(move.getFromSquare(), move.getToSquare(), move.getPromotion());
+	}
+
+	@Override
+	public void undoMove(int move) {
+		undoMove(MoveHelper.getFromSquare(move), MoveHelper.getToSquare(move),
+				MoveHelper.getPromotion(move));
+	}
+
+	/**
+	 * see <code>undoMove(IMove move)</code>
+	 */
+	private void undoMove(int src, int dest, Piece promotion) {
+
+		resetCache();
+
+		int from = Bitboards.toIndex(src);
+		int to = Bitboards.toIndex(dest);
+		Piece piece = promotion != null ? Piece.PAWN : piece_board[to];
+
+		// Change active_color after move
+		active_color = Side.getOppositeSide(active_color);
+		Side opp_color = getOpponentsColor();
+
+		// get the missing information
+		en_passant_target = irr_move_stack.getEnPassantSquare();
+		Piece capture = irr_move_stack.getCapture();
+		half_move_clock = irr_move_stack.getHalfMoveClock();
+		irr_move_stack.getCastling(castling);
+		is_check = irr_move_stack.getIsCheck();
+		long old_zobrist_key = irr_move_stack.getZobristKey();
+		irr_move_stack.removeLast();
+
+		removePiece(to);
+		setPiece(from, active_color, piece);
+		if (capture != null)
+			setPiece(to, opp_color, capture);
+
+		// If castling
+		if (piece == Piece.KING && Math.abs(src - dest) == 20) {
+			removePiece(Bitboards.toIndex((src + dest) / 2));
+			setPiece(Bitboards.toIndex(SquareHelper.getColumn(dest) == 3 ? src - 40
+					: src + 30), active_color, Piece.ROOK);
+		}
+		// If en passant
+		else if (piece == Piece.PAWN && dest == en_passant_target) {
+			setPiece(Bitboards.toIndex(active_color == Side.WHITE ? dest - 1
+					: dest + 1), opp_color, Piece.PAWN);
+		}
+
+		// the key before the move was saved
+		zobrist_key = old_zobrist_key;
+		assert isValid();
+
+		is_mate = false;
+		is_stale_mate = false;
+	}
+
+	@Override
+	public void doNullMove() {
+		irr_move_stack.addInfo(half_move_clock, castling, en_passant_target,
+				null, is_check, zobrist_key);
+
+		half_move_clock++;
+		zobrist_key ^= Zobrist.getEnPassantKey(en_passant_target)
+				^ Zobrist.BLACK_TO_MOVE;
+		en_passant_target = -1;
+		active_color = Side.getOppositeSide(active_color);
+		assert isValid();
+
+		resetCache();
+	}
+
+	@Override
+	public void undoNullMove() {
+		resetCache();
+
+		active_color = Side.getOppositeSide(active_color);
+		en_passant_target = irr_move_stack.getEnPassantSquare();
+		half_move_clock = irr_move_stack.getHalfMoveClock();
+		is_check = irr_move_stack.getIsCheck();
+		zobrist_key = irr_move_stack.getZobristKey();
+		irr_move_stack.removeLast();
+		assert isValid();
+
+		is_mate = false;
+		is_stale_mate = false;
+	}
+
+	@Override
+	public void setHalfMoveClock(int parseInt) {
+		half_move_clock = parseInt;
+	}
+
+	@Override
+	public int getHalfMoveClock() {
+		return half_move_clock;
+	}
+
+}
@@ -0,0 +1,308 @@
+package mitzi;
+
+/**
+ * Contains the precomputed attack tables for <code>BitboardPosition</code>. A
+ * bitboard is a <code>long</code>, where bit i is set, if the square with index
+ * i is occupied. The index of a square is the same as in
+ * <code>Position.square_to_array_index</code>, i.e. a8 has index 0, h8 index 7
+ * and h1 index 63. Therefore the same Zobrist keys can be used for both
+ * implementations of IPosition.
+ *
+ * The attacks of the sliding pieces are looked up with magic bitboards: the
+ * relevant occupancy of a square is multiplied with a magic number and the
+ * upper bits of the product are the index in the attack table of the square.
+ * The magic numbers were found by a random search for the square indices of
+ * this class. The attack tables are filled at startup, where the magic numbers
+ * are checked as well.
+ *
+ * @see <a
+ *      href="http://chessprogramming.wikispaces.com/Magic+Bitboards">Magic
+ *      Bitboards</a>
+ */
+public final class Bitboards {
+
+	/**
+	 * the attacks of a knight on each square
+	 */
+	private static final long[] knight_attacks = new long[64];
+
+	/**
+	 * the attacks of a king on each square
+	 */
+	private static final long[] king_attacks = new long[64];
+
+	/**
+	 * the attacks of a pawn on each square, indexed by side.ordinal() * 64 +
+	 * index
+	 */
+	private static final long[] pawn_attacks = new long[2 * 64];
+
+	/**
+	 * maps a square to its index, 64 if the square is not on the board
+	 */
+	private static final int[] square_to_index = new int[100];
+
+	private static final long[] rook_masks = new long[64];
+	private static final long[] rook_magics = {
+			0x0480046281400010L, 0x80C0200010004000L, 0x8780200008300180L,
+			0x8880060800100080L, 0x2100030010080084L, 0x0100040001000802L,
+			0x0200040800810200L, 0x0580008002407100L, 0x1000800080400020L,
+			0x0080401000402001L, 0x800C802002100880L, 0x800A002200884010L,
+			0x2046002008108600L, 0x0222009002000804L, 0x100B000421001200L,
+			0x0240800100004080L, 0x4540008020408006L, 0x8010054020084002L,
+			0x7D10010100200040L, 0x1408008010000882L, 0x4408010005000810L,
+			0x001E008004000280L, 0x0230040001080210L, 0x0000020004004081L,
+			0x0100400080208001L, 0x1000842300400100L, 0x1060100080200082L,
+			0x3219004B00100020L, 0x9010080080800400L, 0x8440020080800400L,
+			0x6008010080800200L, 0x4123008200010044L, 0x0280002001400240L,
+			0x0220100040400020L, 0x0060801003802008L, 0x0008100080800800L,
+			0x0105000801001004L, 0x100B000803000400L, 0x0000024814001021L,
+			0x00408000C2802100L, 0x4C40004020808002L, 0x4410500420024000L,
+			0x00C0100020008080L, 0x0000100008008080L, 0x8002000804220011L,
+			0x0802000804010100L, 0x0243100201040008L, 0x0000009100420014L,
+			0x1000400280022480L, 0x0020200040100040L, 0x00A000100800C140L,
+			0x0410001408008080L, 0x0000080004008080L, 0x0100020004008080L,
+			0x0303000200040300L, 0x1480006104008200L, 0x00008002204A1101L,
+			0x1040090010224081L, 0x4300C0200011000DL, 0x8002041001002009L,
+			0x2005000800020411L, 0x110A008408100102L, 0x0006000108008402L,
+			0x0200002900884402L };
+	private static final int[] rook_shifts = new int[64];
+	private static final long[][] rook_attacks = new long[64][];
+
+	private static final long[] bishop_masks = new long[64];
+	private static final long[] bishop_magics = {
+			0x48081010008A2A80L, 0x000948110C0B2081L, 0x0944140400500000L,
+			0x4984104A00000101L, 0x4004030818283008L, 0x0206012462000121L,
+			0x1A02013008040001L, 0x0001008044200440L, 0x0000312208080880L,
+			0x0220021002009900L, 0x8080880801082000L, 0x000C11040080102AL,
+			0x1402440421000210L, 0x0010120802080A81L, 0x0080084202104028L,
+			0x1100002082082082L, 0x0008403429080820L, 0x8104868204040412L,
+			0x6424084043060030L, 0x1108000420401000L, 0x9004101202020240L,
+			0x0032400608200412L, 0x0001009610822080L, 0x0008403429080820L,
+			0x0008068340104200L, 0x0010102858090121L, 0x81004C0018080313L,
+			0x4048080004820002L, 0x000900401C004049L, 0x0009420121C1101CL,
+			0x4828504005040211L, 0x4828504005040211L, 0x0041041381202000L,
+			0x01008C1005601680L, 0x01D010900002040AL, 0x4040020080080080L,
+			0x4801080200802200L, 0x4801080200802200L, 0x0010046108108080L,
+			0x90409090810A0220L, 0x8004020242201020L, 0x8004020242201020L,
+			0x0202010028020480L, 0x0000041144000801L, 0x00002000A4021080L,
+			0x0504090045040200L, 0x8182041102094400L, 0x0550008100480101L,
+			0xC002080404040400L, 0x0382004108292000L, 0x12000100A8040020L,
+			0xA005020442088020L, 0x2000001102020300L, 0x000021E0420C8808L,
+			0x3060200484888400L, 0x01280101021A0802L, 0x1030820110010500L,
+			0x0080012608025800L, 0x0002810084008800L, 0x800080000C208800L,
+			0xA408002140028204L, 0x0010006020322084L, 0x0210401044110050L,
+			0x40106000A1160020L };
+	private static final int[] bishop_shifts = new int[64];
+	private static final long[][] bishop_attacks = new long[64][];
+
+	/**
+	 * the directions of the pieces as (column, row) steps
+	 */
+	private static final int[][] ROOK_STEPS = { { 1, 0 }, { -1, 0 }, { 0, 1 },
+			{ 0, -1 } };
+	private static final int[][] BISHOP_STEPS = { { 1, 1 }, { 1, -1 },
+			{ -1, 1 }, { -1, -1 } };
+	private static final int[][] KNIGHT_STEPS = { { 1, 2 }, { 2, 1 },
+			{ 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+
+	static {
+		for (int square = 0; square < 100; square++)
+			square_to_index[square] = SquareHelper.isValidSquare(square) ? (8 - SquareHelper
+					.getRow(square)) * 8 + SquareHelper.getColumn(square) - 1
+					: 64;
+
+		for (int index = 0; index < 64; index++) {
+			int column = getColumn(index);
+			int row = getRow(index);
+
+			for (int[] step : KNIGHT_STEPS)
+				knight_attacks[index] |= getBit(column + step[0], row + step[1]);
+			for (int[] step : ROOK_STEPS)
+				king_attacks[index] |= getBit(column + step[0], row + step[1]);
+			for (int[] step : BISHOP_STEPS)
+				king_attacks[index] |= getBit(column + step[0], row + step[1]);
+
+			pawn_attacks[Side.WHITE.ordinal() * 64 + index] = getBit(
+					column - 1, row + 1) | getBit(column + 1, row + 1);
+			pawn_attacks[Side.BLACK.ordinal() * 64 + index] = getBit(
+					column - 1, row - 1) | getBit(column + 1, row - 1);
+		}
+
+		initMagics(ROOK_STEPS, rook_masks, rook_magics, rook_shifts,
+				rook_attacks);
+		initMagics(BISHOP_STEPS, bishop_masks, bishop_magics, bishop_shifts,
+				bishop_attacks);
+	}
+
+	private Bitboards() {
+	}
+
+	/**
+	 * @param square
+	 *            the square, see SquareHelper
+	 * @return the index of the square in a bitboard, 64 if the square is not
+	 *         on the board
+	 */
+	public static int toIndex(int square) {
+		if (square < 0 || square >= 100)
+			return 64;
+		return square_to_index[square];
+	}
+
+	/**
+	 * @param index
+	 *            the index of the square in a bitboard
+	 * @return the square, see SquareHelper
+	 */
+	public static int toSquare(int index) {
+		return (getColumn(index) + 1) * 10 + getRow(index) + 1;
+	}
+
+	/**
+	 * @return the column of an index, 0 for column a
+	 */
+	private static int getColumn(int index) {
+		return index & 7;
+	}
+
+	/**
+	 * @return the row of an index, 0 for row 1
+	 */
+	private static int getRow(int index) {
+		return 7 - (index >>> 3);
+	}
+
+	/**
+	 * @return the bitboard of a single square, 0 if the square is not on the
+	 *         board
+	 */
+	private static long getBit(int column, int row) {
+		if (column < 0 || column > 7 || row < 0 || row > 7)
+			return 0;
+		return 1L << ((7 - row) * 8 + column);
+	}
+
+	/**
+	 * @return the squares attacked by a knight
+	 */
+	public static long knightAttacks(int index) {
+		return knight_attacks[index];
+	}
+
+	/**
+	 * @return the squares attacked by a king
+	 */
+	public static long kingAttacks(int index) {
+		return king_attacks[index];
+	}
+
+	/**
+	 * @return the squares attacked by a pawn of the given side
+	 */
+	public static long pawnAttacks(Side side, int index) {
+		return pawn_attacks[side.ordinal() * 64 + index];
+	}
+
+	/**
+	 * @return the squares attacked by a rook, including the first occupied
+	 *         square in each direction
+	 */
+	public static long rookAttacks(int index, long occupied) {
+		return rook_attacks[index][(int) (((occupied & rook_masks[index]) * rook_magics[index]) >>> rook_shifts[index])];
+	}
+
+	/**
+	 * @return the squares attacked by a bishop, including the first occupied
+	 *         square in each direction
+	 */
+	public static long bishopAttacks(int index, long occupied) {
+		return bishop_attacks[index][(int) (((occupied & bishop_masks[index]) * bishop_magics[index]) >>> bishop_shifts[index])];
+	}
+
+	/**
+	 * @return the squares attacked by a queen
+	 */
+	public static long queenAttacks(int index, long occupied) {
+		return rookAttacks(index, occupied) | bishopAttacks(index, occupied);
+	}
+
+	/**
+	 * computes the attacks of a sliding piece by walking in each direction
+	 * until an occupied square is found.
+	 *
+	 * @param steps
+	 *            the directions of the piece
+	 * @param index
+	 *            the square of the piece
+	 * @param occupied
+	 *            the occupied squares
+	 * @param mask
+	 *            if true, the squares at the border are omitted, which gives
+	 *            the relevant occupancy of the square.
+	 * @return the attacked squares
+	 */
+	private static long slidingAttacks(int[][] steps, int index,
+			long occupied, boolean mask) {
+		long attacks = 0;
+		for (int[] step : steps) {
+			int column = getColumn(index) + step[0];
+			int row = getRow(index) + step[1];
+			while (column >= 0 && column <= 7 && row >= 0 && row <= 7) {
+				if (mask
+						&& (column + step[0] < 0 || column + step[0] > 7
+								|| row + step[1] < 0 || row + step[1] > 7))
+					break;
+				long bit = getBit(column, row);
+				attacks |= bit;
+				if ((occupied & bit) != 0)
+					break;
+				column += step[0];
+				row += step[1];
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * fills the attack tables of a sliding piece.
+	 *
+	 * @throws IllegalStateException
+	 *             if a magic number maps two occupancies with different
+	 *             attacks to the same entry
+	 */
+	private static void initMagics(int[][] steps, long[] masks, long[] magics,
+			int[] shifts, long[][] attacks) {
+		for (int index = 0; index < 64; index++) {
+			long mask = slidingAttacks(steps, index, 0, true);
+			int bits = Long.bitCount(mask);
+			int size = 1 << bits;
+
+			// enumerate all subsets of the mask (Carry-Rippler)
+			long[] occupancies = new long[size];
+			long[] references = new long[size];
+			long subset = 0;
+			for (int i = 0; i < size; i++) {
+				occupancies[i] = subset;
+				references[i] = slidingAttacks(steps, index, subset, false);
+				subset = (subset - mask) & mask;
+			}
+
+			long magic = magics[index];
+			long[] table = new long[size];
+			boolean[] used = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				int key = (int) ((occupancies[i] * magic) >>> (64 - bits));
+				if (used[key] && table[key] != references[i])
+					throw new IllegalStateException("invalid magic for index "
+							+ index);
+				used[key] = true;
+				table[key] = references[i];
+			}
+
+			masks[index] = mask;
+			shifts[index] = 64 - bits;
+			attacks[index] = table;
+		}
+	}
+}
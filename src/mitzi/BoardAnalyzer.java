@@ -3,7 +3,7 @@ package mitzi;
 import static mitzi.MateScores.NEG_INF;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -27,78 +27,6 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 			64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64, 64,
 			64, 64, 64 };
 
-	/**
-	 * the material value of a piece.
-	 */
-	static private int[] piece_values = { 100, 500, 325, 325, 975, 000 };
-
-	// The following arrays contains the value of a piece on a specific square,
-	// always in favor of white. Since the arrays are symmetric w.r.t. the
-	// columns, BLACK uses 63-i entry with opposite sign.
-	/**
-	 * value of squares for bishop and knight, in favor of white
-	 */
-	static private int[] piece_activity_b_k = { -16, -16, -8, -8, -8, -8, -16,
-			-16, -16, -16, -4, -4, -4, -4, -16, -16, -8, 2, 6, 6, 6, 6, 2, -8,
-			-8, 2, 6, 6, 6, 6, 2, -8, -8, 2, 4, 4, 4, 4, 2, -8, -8, 2, 2, 2, 2,
-			2, 2, -8, -8, -8, 0, 0, 0, 0, -8, -8, -16, -8, -8, -8, -8, -8, -8,
-			-16 };
-	/**
-	 * value of squares for rook, in favor of white
-	 */
-	static private int[] piece_activity_r = { 0, 0, 4, 6, 6, 4, 0, 0, 0, 0, 4,
-			6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0, 0, 0,
-			0, 4, 6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0,
-			0, 0, 0, 4, 6, 6, 4, 0, 0, };
-
-	/**
-	 * value of squares for queen, in favor of white
-	 */
-	static private int[] piece_activity_q = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 4,
-			5, 5, 4, 0, 0, 0, 2, 4, 10, 10, 4, 2, 0, 0, 2, 10, 12, 12, 10, 2,
-			0, -10, 2, 10, 12, 12, 10, 2, -10, -10, -10, 4, 10, 10, 4, -10,
-			-10, -10, 2, 8, 8, 8, 8, 2, -10, -10, -8, 0, 0, 0, 0, -8, -10, };
-
-	/**
-	 * value of squares, which are weak/strong squares for bishop and knight
-	 */
-	static private int[] weak_positions = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 8, 12, 12, 8, 0, 0, 0, 2, 12, 16, 16, 12, 2, 0,
-			0, 2, 12, 20, 20, 12, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, };
-
-	/**
-	 * value of squares for white pawns. (not symmetric)
-	 */
-	static private int[] pawn_positions_w = { 0, 0, 0, 0, 0, 0, 0, 0, 28, 28,
-			35, 42, 45, 35, 28, 28, -9, -3, 7, 12, 15, 7, -3, -9, -10, -10, 6,
-			9, 10, 6, -11, -10, -11, -11, 4, 5, 6, 2, -11, -11, -11, -11, 0, 0,
-			1, 0, -11, -11, -6, -6, 4, 5, 5, 4, -6, -6, 0, 0, 0, 0, 0, 0, 0, 0 };
-
-	/**
-	 * value of squares for black pawns. (not symmetric)
-	 */
-	static private int[] pawn_positions_b = { 0, 0, 0, 0, 0, 0, 0, 0, -6, -6,
-			4, 5, 5, 4, -6, -6, -11, -11, 0, 0, 1, 0, -11, -11, -11, -11, 4, 5,
-			6, 2, -11, -11, -10, -10, 6, 9, 10, 6, -11, -10, -9, -3, 7, 12, 15,
-			7, -3, -9, 28, 28, 35, 42, 45, 35, 28, 28, 0, 0, 0, 0, 0, 0, 0, 0 };
-
-	/**
-	 * value of squares for white king, not valid in endgame. (not symmetric)
-	 */
-	static private int[] king_positions_w = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -10, -15,
-			-10, 0, 0, 5, 10, 18, -8, -3, -8, 23, 10 };
-
-	/**
-	 * value of squares for black king, not valid in endgame. (not symmetric)
-	 */
-	static private int[] king_positions_b = { 5, 10, 18, -8, -3, -8, 23, 10, 0,
-			0, 0, -10, -15, -10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
-
 	/**
 	 * value for twin pawns for different rows.
 	 */
@@ -207,31 +135,135 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 	static private int CASTLING_LOSS = -40;
 	
 	/**
-	 * the number of pieces when the endgame starts (a first draft, needs to be
-	 * optimized)
+	 * counts the number of board evaluations in quiesce().
+	 */
+	public long eval_counter_seldepth = 0;
+
+	/**
+	 * counts the number of found positions in Transposition Table
 	 */
-	static public int ENDGAME_THRESHOLD = 12;
+	public long table_counter = 0;
 
 	/**
-	 * counts the number of board evaluations in quiesce().
+	 * counts the captures in quiesce(), which are not searched, because they
+	 * lose material.
 	 */
-	static public long eval_counter_seldepth = 0;
+	public long see_pruned_counter = 0;
 
 	/**
-	 * counts the number of found positions in Transposition Table
+	 * counts the lookups in the EvalCache
+	 */
+	public long eval_cache_probes = 0;
+
+	/**
+	 * counts the found positions in the EvalCache
 	 */
-	static public long table_counter = 0;
+	public long eval_cache_hits = 0;
 
 	private int[] start_castling = new int[4];
+
+	/**
+	 * the cache for the evaluation of the pawn structure
+	 */
+	private final PawnHashTable pawn_table;
+
+	/**
+	 * the passed pawns found by the last call of evalPawnStructure(), indexed
+	 * like Bitboards
+	 */
+	private long passed_pawns;
+
+	/**
+	 * the buffer of the static exchange evaluation
+	 */
+	private final int[] see_gains = new int[StaticExchange.MAX_CAPTURES];
+
+	/**
+	 * the buffers of the nodes of the quiescence search, indexed by the
+	 * distance from the first node of the quiescence search. They are reused
+	 * by all nodes of this analyzer.
+	 */
+	private QuiescenceBuffers[] quiescence_frames = new QuiescenceBuffers[16];
+
+	/**
+	 * the buffer of hasLegalMove()
+	 */
+	private final int[] legal_moves = new int[MoveHelper.MAX_MOVES];
+
+	/**
+	 * The buffers of a node of the quiescence search.
+	 */
+	private static class QuiescenceBuffers {
+
+		/**
+		 * the pseudolegal captures and promotions
+		 */
+		private final int[] captures = new int[MoveHelper.MAX_MOVES];
+
+		/**
+		 * the captures, which do not lose material, and their exchange
+		 * values, sorted by the value
+		 */
+		private final int[] ordered_captures = new int[MoveHelper.MAX_MOVES];
+		private final int[] capture_values = new int[MoveHelper.MAX_MOVES];
+	}
+
+	public BoardAnalyzer() {
+		this(new PawnHashTable());
+	}
+
+	/**
+	 * @param pawn_table
+	 *            the cache for the pawn structure, which must not be used by
+	 *            another thread at the same time
+	 */
+	public BoardAnalyzer(PawnHashTable pawn_table) {
+		this.pawn_table = pawn_table;
+	}
+
+	/**
+	 * @return the cache for the pawn structure
+	 */
+	public PawnHashTable getPawnHashTable() {
+		return pawn_table;
+	}
 	
 	@Override
 	public AnalysisResult eval0(IPosition board) {
+		// the evaluation depends only on the position, so it is cached
+		long key = board.getZobristKey();
+		eval_cache_probes++;
+		int score = EvalCache.getScore(key);
+		if (score != EvalCache.NO_SCORE) {
+			eval_cache_hits++;
+		} else {
+			score = evaluate(board);
+			EvalCache.setScore(key, score);
+		}
+
+		AnalysisResult result = new AnalysisResult(score, false, false, 0, 0,
+				Flag.EXACT);
+		return result;
+	}
+
+	/**
+	 * computes the static evaluation of the board.
+	 * 
+	 * @param board
+	 *            the board to be analyzed
+	 * @return the score ( in favor of white)
+	 */
+	private int evaluate(IPosition board) {
 		int score = 0;
 		// compute all the information needed by the evaluation function once.
 		board.cacheOccupiedSquares();
 
-		// Evaluate the pieces
-		score += evalPieces(board);
+		// Evaluate the material and the piece-square tables, which are
+		// maintained incrementally by the position
+		score += board.getPieceSquareScore();
+
+		// Evaluate the bishop pair
+		score += evalBishopPair(board);
 
 		// Evaluate Pawn Stucture
 		score += evalPawns(board);
@@ -239,24 +271,19 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 		// Evaluate Diagonals and lines
 		score += evalLinesAndDiagonals(board);
 
-		// Evaluate position - activity
-		score += evalPieceActivity(board);
+		// Evaluate the development of the queen
+		score += evalPrematureQueen(board);
 
 		// Evaluate weak/strong position
 		score += evalWeakPosition(board);
 
-		// Evaluate the King's position (not in endgame)
-		score += evalKingPos(board);
-
-		AnalysisResult result = new AnalysisResult(score, false, false, 0, 0,
-				Flag.EXACT);
-		return result;
+		return score;
 	}
 
 	@Override
 	public AnalysisResult evalBoard(IPosition position, int alpha, int beta)
 			throws InterruptedException {
-		AnalysisResult result = quiesce(position, alpha, beta);
+		AnalysisResult result = quiesce(position, alpha, beta, 0);
 
 		// The analysis result should always contain the pure value (not
 		// perturbed via side_sign)
@@ -278,12 +305,14 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 	 *            the alpha value of alpha-beta search
 	 * @param beta
 	 *            the beta value of alpha-beta search
+	 * @param ply
+	 *            the distance from the first node of the quiescence search
 	 * @return the value of the board ( in favor of white)
 	 * 
 	 * @throws InterruptedException
 	 */
-	private AnalysisResult quiesce(IPosition position, int alpha, int beta)
-			throws InterruptedException {
+	private AnalysisResult quiesce(IPosition position, int alpha, int beta,
+			int ply) throws InterruptedException {
 
 		if (Thread.interrupted()) {
 			throw new InterruptedException();
@@ -309,11 +338,14 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 			}
 		}
 
-		// generate moves
-		List<IMove> moves = position.getPossibleMoves();
+		// generate the captures and promotions, their legality is checked
+		// only for the moves, which are searched
+		QuiescenceBuffers buffers = getFrame(ply);
+		int[] captures = buffers.captures;
+		int captures_count = position.generateCaptures(captures);
 
 		// check for mate and stalemate
-		if (moves.isEmpty()) {
+		if (!hasLegalMove(position, captures, captures_count)) {
 			eval_counter_seldepth++;
 			if (position.isCheckPosition()) {
 				return new AnalysisResult(NEG_INF * side_sign, false, false, 0,
@@ -334,24 +366,39 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 			return standing_pat;
 		alpha = Math.max(alpha, negaval);
 
-		// Generate possible Captures
-		List<IMove> captures = position.generateCaptures();
-		if (captures.size()>1) {
-			// Generate MoveComperator
-			BasicMoveComparator move_comparator = new BasicMoveComparator(position);	
-			
-			//CaptureComparator move_comparator = new CaptureComparator(position);
-			Collections.sort(captures,
-					Collections.reverseOrder(move_comparator));
+		// Generate possible Captures, the captures which lose material by the
+		// static exchange evaluation are not searched. The remaining captures
+		// are sorted by their exchange value.
+		int[] ordered_captures = buffers.ordered_captures;
+		int[] capture_values = buffers.capture_values;
+		int n = 0;
+		for (int i = 0; i < captures_count; i++) {
+			int move = captures[i];
+			int value = StaticExchange.see(position, move, see_gains);
+			if (value < 0) {
+				see_pruned_counter++;
+				continue;
+			}
+			int k = n++;
+			for (; k > 0 && capture_values[k - 1] < value; k--) {
+				ordered_captures[k] = ordered_captures[k - 1];
+				capture_values[k] = capture_values[k - 1];
+			}
+			ordered_captures[k] = move;
+			capture_values[k] = value;
 		}
 
 		AnalysisResult result = null;
 		int best_value = NEG_INF;
 
-		for (IMove move : captures) {
+		for (int k = 0; k < n; k++) {
+			int move = ordered_captures[k];
+			if (!position.isLegal(move))
+				continue;
 
 			position.doMove(move);
-			AnalysisResult result_temp = quiesce(position, -beta, -alpha);
+			AnalysisResult result_temp = quiesce(position, -beta, -alpha,
+					ply + 1);
 			position.undoMove(move);
 
 			negaval = result_temp.score * side_sign;
@@ -381,119 +428,98 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 	}
 
 	/**
-	 * Evaluates only the material value of the board.
+	 * @return the buffers of a node of the quiescence search, they are
+	 *         created on demand.
+	 */
+	private QuiescenceBuffers getFrame(int ply) {
+		if (ply == quiescence_frames.length)
+			quiescence_frames = Arrays.copyOf(quiescence_frames, 2 * ply);
+		if (quiescence_frames[ply] == null)
+			quiescence_frames[ply] = new QuiescenceBuffers();
+		return quiescence_frames[ply];
+	}
+
+	/**
+	 * checks, if the active side has a legal move. The captures are tried
+	 * first, only if all of them are illegal, the other moves are generated.
+	 * 
+	 * @param position
+	 *            the position
+	 * @param captures
+	 *            the pseudolegal captures and promotions of the position
+	 * @param n
+	 *            the number of captures
+	 * @return true, if there is a legal move
+	 */
+	private boolean hasLegalMove(IPosition position, int[] captures, int n) {
+		for (int i = 0; i < n; i++)
+			if (position.isLegal(captures[i]))
+				return true;
+
+		int[] moves = legal_moves;
+		int count = position.generateMoves(moves);
+		for (int i = 0; i < count; i++)
+			if (position.isLegal(moves[i]))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Evaluates the bonus for the bishop pair.
 	 * 
 	 * @param board
 	 *            the actual board
-	 * @return the material value ( in favor of white)
+	 * @return the bonus ( in favor of white)
 	 */
-	private int evalPieces(IPosition board) {
+	private int evalBishopPair(IPosition board) {
 		int score = 0;
 
-		// basic evaluation
-		for (Side side : Side.values()) {
-			int side_sign = Side.getSideSign(side);
-
-			// piece values
-			for (Piece piece : Piece.values()) {
-				score += board.getNumberOfPiecesByColorAndType(side, piece)
-						* piece_values[piece.ordinal()] * side_sign;
-			}
-
-			// bishop pair gives bonus
-			if (board.getNumberOfPiecesByColorAndType(side, Piece.BISHOP) == 2) {
-				score += bishop_pair_value * side_sign;
-			}
-		}
+		for (Side side : Side.values())
+			if (board.getNumberOfPiecesByColorAndType(side, Piece.BISHOP) == 2)
+				score += bishop_pair_value * Side.getSideSign(side);
 
 		return score;
 	}
 
 	/**
-	 * Computes the value of the possible activity of the pieces, e.g.
-	 * centralization,...
+	 * Gives a malus, if the queen has left its initial square, while the
+	 * bishop or the knight on the queen side has not been developed.
 	 * 
 	 * @param board
 	 *            the board to be analyzed
-	 * @return the score for the activity of Rook, Bishop, Knight, Queen ( in
-	 *         favor of white)
+	 * @return the malus for a premature queen ( in favor of white)
 	 */
-	private int evalPieceActivity(IPosition board) {
+	private int evalPrematureQueen(IPosition board) {
 		int score = 0;
-		Set<Integer> squares;
-		boolean queen_moved_last, queen_startpos;
 
 		for (Side side : Side.values()) {
-			int side_sign = Side.getSideSign(side);
-			queen_moved_last = true;
-			queen_startpos = false;
-
-			// Queen
-			squares = board.getOccupiedSquaresByColorAndType(side, Piece.QUEEN);
-			if (side == Side.WHITE)
-				for (int squ : squares)
-					score += piece_activity_q[square_to_array_index[squ]];
-			else
-				for (int squ : squares)
-					score -= piece_activity_q[63 - square_to_array_index[squ]];
-
-			if ((squares.contains(SquareHelper.getSquare(
-					SquareHelper.getRowForSide(side, 1), 4))))
-				queen_startpos = true;
-
-			// Bishop
-			squares = board
-					.getOccupiedSquaresByColorAndType(side, Piece.BISHOP);
-			if (side == Side.WHITE)
-				for (int squ : squares)
-					score += piece_activity_b_k[square_to_array_index[squ]];
-			else
-				for (int squ : squares)
-					score -= piece_activity_b_k[63 - square_to_array_index[squ]];
-
-			if (!queen_startpos
-					&& (squares.contains(SquareHelper.getSquare(
-							SquareHelper.getRowForSide(side, 1), 3)) || squares
-							.contains(SquareHelper.getSquare(
-									SquareHelper.getRowForSide(side, 1), 3))))
-				queen_moved_last = false;
-
-			// Knight
-			squares = board
-					.getOccupiedSquaresByColorAndType(side, Piece.KNIGHT);
-			if (side == Side.WHITE)
-				for (int squ : squares)
-					score += piece_activity_b_k[square_to_array_index[squ]];
-			else
-				for (int squ : squares)
-					score -= piece_activity_b_k[63 - square_to_array_index[squ]];
-
-			if (!queen_startpos
-					&& (squares.contains(SquareHelper.getSquare(
-							SquareHelper.getRowForSide(side, 1), 2)) || squares
-							.contains(SquareHelper.getSquare(
-									SquareHelper.getRowForSide(side, 1), 2))))
-				queen_moved_last = false;
-
-			// Rook
-			squares = board.getOccupiedSquaresByColorAndType(side, Piece.ROOK);
-			if (side == Side.WHITE)
-				for (int squ : squares)
-					score += piece_activity_r[square_to_array_index[squ]];
-			else
-				for (int squ : squares)
-					score -= piece_activity_r[63 - square_to_array_index[squ]];
-
-			if (!queen_startpos && !queen_moved_last)
-				score += side_sign * PREMATURE_QUEEN;
-
+			int row = SquareHelper.getRowForSide(side, 1);
+			if (isOnSquare(board, SquareHelper.getSquare(row, 4), side,
+					Piece.QUEEN))
+				continue;
+
+			if (isOnSquare(board, SquareHelper.getSquare(row, 3), side,
+					Piece.BISHOP)
+					|| isOnSquare(board, SquareHelper.getSquare(row, 2), side,
+							Piece.KNIGHT))
+				score += Side.getSideSign(side) * PREMATURE_QUEEN;
 		}
 		return score;
 	}
 
+	/**
+	 * @return true, if the given piece of the side is on the square
+	 */
+	private static boolean isOnSquare(IPosition board, int square, Side side,
+			Piece piece) {
+		return board.getPieceFromBoard(square) == piece
+				&& board.getSideFromBoard(square) == side;
+	}
+
 	/**
 	 * this function evaluates the weak position of an outpost, however only for
 	 * bishop and knight. If a knight is covered by pawn, the value increases.
+	 * The value of the square itself is part of the piece-square tables.
 	 * 
 	 * @param board
 	 *            the board to be analyzed
@@ -506,16 +532,6 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 
 		for (Side side : Side.values()) {
 
-			// Bishop
-			squares = board
-					.getOccupiedSquaresByColorAndType(side, Piece.BISHOP);
-			if (side == Side.WHITE)
-				for (int squ : squares)
-					score += weak_positions[square_to_array_index[squ]];
-			else
-				for (int squ : squares)
-					score -= weak_positions[63 - square_to_array_index[squ]];
-
 			// Knight (value get multiplied times the number of pawn covering
 			// the knight, if no cover no bonus is added)
 			squares = board
@@ -527,7 +543,8 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 							.pawnCapturingDirections(Side.BLACK))
 						if (board.getPieceFromBoard(squ + dir.offset) == Piece.PAWN)
 							count++;
-					score += count * weak_positions[square_to_array_index[squ]];
+					score += count
+							* PieceSquareTables.weak_positions[square_to_array_index[squ]];
 				}
 			} else {
 				for (int squ : squares) {
@@ -536,7 +553,7 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 						if (board.getPieceFromBoard(squ + dir.offset) == Piece.PAWN)
 							count++;
 					score -= count
-							* weak_positions[63 - square_to_array_index[squ]];
+							* PieceSquareTables.weak_positions[63 - square_to_array_index[squ]];
 				}
 			}
 
@@ -688,18 +705,43 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 	}
 
 	/**
-	 * evaluates the pawn structure. Checks for covered pawns, passed pawns,
-	 * isolated pawns, twin pawns... value dependent of the row
+	 * evaluates the pawn structure. The terms, which only depend on the pawns,
+	 * are looked up in the PawnHashTable, the support of the passed pawns by
+	 * the king and the rooks is added.
 	 * 
 	 * @param position
 	 *            the current position
 	 * @return the value of the pawn structure in favor of white
 	 */
 	private int evalPawns(IPosition position) {
+		long pawn_key = position.getPawnKey();
+		int index = pawn_table.probe(pawn_key);
+		if (index == -1) {
+			int score = evalPawnStructure(position);
+			index = pawn_table.store(pawn_key, score, passed_pawns);
+		}
+
+		return pawn_table.getScore(index)
+				+ evalPassedPawnSupport(position,
+						pawn_table.getPassedPawns(index));
+	}
+
+	/**
+	 * evaluates the pawn structure. Checks for covered pawns, passed pawns,
+	 * isolated pawns, twin pawns... value dependent of the row. Only the pawns
+	 * are considered, the passed pawns are stored in
+	 * <code>passed_pawns</code>.
+	 * 
+	 * @param position
+	 *            the current position
+	 * @return the value of the pawn structure in favor of white
+	 */
+	private int evalPawnStructure(IPosition position) {
 
 		int score = 0;
 		int row, col, col_2, row_side;
 		boolean isolated, covered, passed;
+		passed_pawns = 0;
 		for (Side side : Side.values()) {
 			int side_sign = Side.getSideSign(side);
 			Side opp_side = Side.getOppositeSide(side);
@@ -708,13 +750,6 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 			Set<Integer> squares_pawn_opp = position
 					.getOccupiedSquaresByColorAndType(opp_side, Piece.PAWN);
 
-			if (side == Side.WHITE)
-				for (int squ : squares_pawn)
-					score += pawn_positions_w[square_to_array_index[squ]];
-			else
-				for (int squ : squares_pawn)
-					score -= pawn_positions_b[square_to_array_index[squ]];
-
 			for (int squ_1 : squares_pawn) {
 				row = SquareHelper.getRow(squ_1);
 				col = SquareHelper.getColumn(squ_1);
@@ -766,6 +801,8 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 
 				}
 				if (passed == true) {
+					passed_pawns |= 1L << Bitboards.toIndex(squ_1);
+
 					// check if a passed pawn is blocked
 					for (int squ_2 : squares_pawn_opp) {
 						if (squ_1 + Direction.pawnDirection(side).offset == squ_2) {
@@ -774,14 +811,6 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 						}
 					}
 
-					// check if a passed pawn is covered by a king (the king
-					// should be in front of the pawn)
-					for (Direction dir : Direction
-							.pawnCapturingDirections(side))
-						if (squ_1 + dir.offset == position.getKingPos(side))
-							score += side_sign
-									* passed_pawn_with_king[row_side];
-
 					// add the bonus for a passed pawn
 					score += side_sign * passed_pawn[row_side];
 
@@ -789,15 +818,6 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 					if (covered == true
 							&& row == SquareHelper.getRowForSide(side, 7))
 						score += side_sign * COVERED_PASSED_7TH_PAWN;
-
-					// if a rook is behind a passed pawn
-					// TODO: check if it better do add the bonus is a rook is on
-					// the same line (behind the pawn)
-					if (position.getPieceFromBoard(squ_1
-							- Direction.pawnDirection(side).offset) == Piece.ROOK
-							&& position.getSideFromBoard(squ_1
-									- Direction.pawnDirection(side).offset) == side)
-						score += side_sign * PASSED_ROOK_SUPPORT;
 				}
 
 			}
@@ -807,32 +827,40 @@ public class BoardAnalyzer implements IPositionAnalyzer {
 	}
 
 	/**
-	 * draft of king's position evaluation function.
+	 * evaluates the support of the passed pawns by the own king and rooks.
 	 * 
 	 * @param position
 	 *            the current position
-	 * @return the score
+	 * @param passed
+	 *            the passed pawns of both sides, indexed like Bitboards
+	 * @return the score in favor of white
 	 */
-	private int evalKingPos(IPosition position) {
+	private int evalPassedPawnSupport(IPosition position, long passed) {
 		int score = 0;
-		int count_fig = position.getNumberOfPiecesByColor(Side.WHITE)
-				+ position.getNumberOfPiecesByColor(Side.BLACK);
-		if (count_fig > ENDGAME_THRESHOLD)
-			for (Side side : Side.values()) {
-				int side_sign = Side.getSideSign(side);
-				if (side == Side.WHITE)
-					score += side_sign
-							* king_positions_w[square_to_array_index[position
-									.getKingPos(side)]];
-				else
-					score += side_sign
-							* king_positions_b[square_to_array_index[position
-									.getKingPos(side)]];
-			}
-
+		for (; passed != 0; passed &= passed - 1) {
+			int squ = Bitboards.toSquare(Long.numberOfTrailingZeros(passed));
+			Side side = position.getSideFromBoard(squ);
+			int side_sign = Side.getSideSign(side);
+			int row_side = SquareHelper.getRowForSide(side,
+					SquareHelper.getRow(squ));
+
+			// check if a passed pawn is covered by a king (the king should be
+			// in front of the pawn)
+			for (Direction dir : Direction.pawnCapturingDirections(side))
+				if (squ + dir.offset == position.getKingPos(side))
+					score += side_sign * passed_pawn_with_king[row_side];
+
+			// if a rook is behind a passed pawn
+			// TODO: check if it better do add the bonus is a rook is on
+			// the same line (behind the pawn)
+			int behind = squ - Direction.pawnDirection(side).offset;
+			if (position.getPieceFromBoard(behind) == Piece.ROOK
+					&& position.getSideFromBoard(behind) == side)
+				score += side_sign * PASSED_ROOK_SUPPORT;
+		}
 		return score;
 	}
-	
+
 	public void setCastling(IPosition position){
 		start_castling[0] = position.canCastle(31) ? 31 : -1;
 		start_castling[1] = position.canCastle(71) ? 71 : -1;
@@ -0,0 +1,158 @@
+package mitzi;
+
+import java.util.Arrays;
+
+/**
+ * caches the static evaluation of <code>BoardAnalyzer.eval0()</code>. The
+ * quiescence search evaluates the same positions again in every iteration of
+ * the iterative deepening and via transpositions, so the evaluation of a
+ * position is looked up here first.
+ *
+ * The cache is a fixed-size table indexed by the lower bits of the Zobrist key
+ * of the position. Every entry is replaced by a newer one, so the cache may
+ * lose entries, but it never returns the score of a different position.
+ *
+ * The table can be used by several search threads at the same time without
+ * any locks, in the same way as <code>ResultCache</code>: each entry consists
+ * of two <code>long</code>s, the key XOR the data and the data. A torn entry
+ * does not match the key and is treated as a miss. The data contains the score
+ * in the lower 32 bits and bit 32 is set, such that an empty entry (0) is never
+ * valid.
+ *
+ * The size of the table is given in megabytes, either at startup with the
+ * system property <code>mitzi.evalcache</code> or via the UCI option
+ * "Eval Cache". A size of 0 disables the cache.
+ */
+public class EvalCache {
+
+	/**
+	 * the default size of the table in megabytes.
+	 */
+	public static final int DEFAULT_SIZE = 8;
+
+	/**
+	 * the maximal size of the table in megabytes.
+	 */
+	public static final int MAX_SIZE = 1024;
+
+	/**
+	 * returned by <code>getScore()</code>, if the position is not stored.
+	 */
+	public static final int NO_SCORE = Integer.MIN_VALUE;
+
+	/**
+	 * the number of bytes of an entry (key and data)
+	 */
+	private static final int ENTRY_BYTES = 16;
+
+	/**
+	 * marks the data of a used entry
+	 */
+	private static final long VALID = 1L << 32;
+
+	/**
+	 * the table, containing for each entry the key XOR the data and the data.
+	 * The number of entries is always a power of two, null if the cache is
+	 * disabled.
+	 */
+	private static volatile long[] table;
+
+	static {
+		setSize(Integer.getInteger("mitzi.evalcache", DEFAULT_SIZE));
+	}
+
+	/**
+	 * Cannot be instantiated.
+	 */
+	private EvalCache() {
+	}
+
+	/**
+	 * Resizes the table to the largest power of two number of entries fitting
+	 * in the given size. All stored scores get lost. This must not be called
+	 * during a search.
+	 *
+	 * @param megabytes
+	 *            the new size in megabytes, between 0 (disabled) and MAX_SIZE
+	 */
+	public static void setSize(int megabytes) {
+		if (megabytes < 0 || megabytes > MAX_SIZE)
+			throw new IllegalArgumentException("invalid eval cache size: "
+					+ megabytes);
+
+		// release the old table before allocating the new one
+		table = null;
+		if (megabytes == 0)
+			return;
+
+		long max_entries = (long) megabytes * 1024 * 1024 / ENTRY_BYTES;
+		int entries = 1;
+		while (entries * 2L <= max_entries)
+			entries *= 2;
+		table = new long[2 * entries];
+	}
+
+	/**
+	 * @return the size of the table in megabytes, 0 if disabled
+	 */
+	public static int getSize() {
+		long[] t = table;
+		if (t == null)
+			return 0;
+		return (int) ((long) t.length / 2 * ENTRY_BYTES / (1024 * 1024));
+	}
+
+	/**
+	 * Removes all stored scores. This must not be called during a search.
+	 */
+	public static void clear() {
+		long[] t = table;
+		if (t != null)
+			Arrays.fill(t, 0);
+	}
+
+	/**
+	 * looks up the static evaluation of a position.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @return the score ( in favor of white), NO_SCORE if the position is not
+	 *         stored.
+	 */
+	public static int getScore(long key) {
+		long[] t = table;
+		if (t == null)
+			return NO_SCORE;
+		int index = getIndex(t, key);
+		long data = t[index + 1];
+		if ((t[index] ^ data) != key || data == 0)
+			return NO_SCORE;
+		return (int) data;
+	}
+
+	/**
+	 * stores the static evaluation of a position, the previous entry is
+	 * replaced.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param score
+	 *            the score ( in favor of white)
+	 */
+	public static void setScore(long key, int score) {
+		long[] t = table;
+		if (t == null)
+			return;
+		int index = getIndex(t, key);
+		long data = (score & 0xFFFFFFFFL) | VALID;
+		t[index] = key ^ data;
+		t[index + 1] = data;
+	}
+
+	/**
+	 * @return the index of the entry of a key in the table
+	 */
+	private static int getIndex(long[] t, long key) {
+		return ((int) key & (t.length / 2 - 1)) * 2;
+	}
+}
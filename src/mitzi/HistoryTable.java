@@ -0,0 +1,121 @@
+package mitzi;
+
+/**
+ * this class stores the history heuristic and the countermoves for the
+ * ordering of the quiet moves. Every search thread should use its own
+ * instance, they are kept between the searches.
+ *
+ * The history is a butterfly table, indexed by the side, the source and the
+ * destination square of a move. If a quiet move causes a beta cutoff, its
+ * entry is increased by depth*depth and the entries of the quiet moves
+ * searched before are decreased by the same amount. The entries stay between
+ * -MAX_HISTORY and MAX_HISTORY, a large bonus moves an entry only part of the
+ * way to the limit. After each search all entries are halved (aging), such
+ * that old results lose their influence.
+ *
+ * The countermove of a move is the last quiet move, which caused a cutoff as
+ * answer to it.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/History+Heuristic">History
+ *      Heuristic</a>
+ * @see <a
+ *      href="http://chessprogramming.wikispaces.com/Countermove+Heuristic">Countermove
+ *      Heuristic</a>
+ */
+public class HistoryTable {
+
+	/**
+	 * the maximal absolute value of an entry
+	 */
+	static final int MAX_HISTORY = 1 << 14;
+
+	/**
+	 * the history, indexed by side.ordinal() * 4096 + 64 * from + to, where
+	 * the squares are indexed like Bitboards
+	 */
+	private final int[] history = new int[2 * 64 * 64];
+
+	/**
+	 * the countermoves, indexed by 64 * from + to of the previous move
+	 */
+	private final int[] counter_moves = new int[64 * 64];
+
+	HistoryTable() {
+	}
+
+	/**
+	 * @return the index of a move in the tables
+	 */
+	private static int getIndex(int move) {
+		return 64 * Bitboards.toIndex(MoveHelper.getFromSquare(move))
+				+ Bitboards.toIndex(MoveHelper.getToSquare(move));
+	}
+
+	/**
+	 * @param side
+	 *            the side, which plays the move
+	 * @param move
+	 *            the packed move
+	 * @return the history value of the move, higher is better
+	 */
+	int getHistory(Side side, int move) {
+		return history[side.ordinal() * 4096 + getIndex(move)];
+	}
+
+	/**
+	 * @param previous_move
+	 *            the packed move, which lead to the position, NO_MOVE if none.
+	 * @return the countermove, NO_MOVE if there is none.
+	 */
+	int getCounterMove(int previous_move) {
+		if (previous_move == MoveHelper.NO_MOVE)
+			return MoveHelper.NO_MOVE;
+		return counter_moves[getIndex(previous_move)];
+	}
+
+	/**
+	 * updates the tables after a quiet move caused a beta cutoff.
+	 *
+	 * @param side
+	 *            the side, which played the move
+	 * @param move
+	 *            the packed move
+	 * @param previous_move
+	 *            the packed move, which lead to the position, NO_MOVE if none.
+	 * @param depth
+	 *            the remaining depth of the node
+	 * @param searched_quiets
+	 *            the quiet moves, which have been searched before the move
+	 *            without a cutoff
+	 * @param n
+	 *            the number of searched quiet moves
+	 */
+	void addCutoff(Side side, int move, int previous_move, int depth,
+			int[] searched_quiets, int n) {
+		int offset = side.ordinal() * 4096;
+		int bonus = Math.min(depth * depth, MAX_HISTORY);
+		update(offset + getIndex(move), bonus);
+		for (int i = 0; i < n; i++)
+			update(offset + getIndex(searched_quiets[i]), -bonus);
+
+		if (previous_move != MoveHelper.NO_MOVE)
+			counter_moves[getIndex(previous_move)] = move;
+	}
+
+	/**
+	 * adds a bonus to an entry, the entry is kept between -MAX_HISTORY and
+	 * MAX_HISTORY.
+	 */
+	private void update(int index, int bonus) {
+		history[index] += bonus - history[index] * Math.abs(bonus)
+				/ MAX_HISTORY;
+	}
+
+	/**
+	 * halves all history entries, should be called after each search.
+	 */
+	void age() {
+		for (int i = 0; i < history.length; i++)
+			history[i] /= 2;
+	}
+}
@@ -53,6 +53,15 @@ public interface IPosition {
 	 */
 	public void doMove(IMove move);
 
+	/**
+	 * Performs the given packed move on the actual board, see
+	 * <code>doMove(IMove move)</code> and <code>MoveHelper</code>.
+	 * 
+	 * @param move
+	 *            the packed move, which should be performed.
+	 */
+	public void doMove(int move);
+
 	/**
 	 * Reverts the given move. In addition a stack is used to recover the whole
 	 * information. There is no check, that the performed move is legal!
@@ -63,6 +72,27 @@ public interface IPosition {
 	 */
 	public void undoMove(IMove move);
 
+	/**
+	 * Reverts the given packed move, see <code>undoMove(IMove move)</code> and
+	 * <code>MoveHelper</code>.
+	 * 
+	 * @param move
+	 *            the packed move, which should be reverted.
+	 */
+	public void undoMove(int move);
+
+	/**
+	 * Passes the right to move to the opponent (null move), e.g. for null move
+	 * pruning. The en passant target is cleared and the Zobrist key is updated
+	 * accordingly. The position must not be check.
+	 */
+	public void doNullMove();
+
+	/**
+	 * Reverts the last null move, see <code>doNullMove()</code>.
+	 */
+	public void undoNullMove();
+
 	/**
 	 * Returns, which side has to move.
 	 * 
@@ -206,6 +236,61 @@ public interface IPosition {
 	 */
 	public List<IMove> getPossibleMovesFrom(int square, boolean pseudolegal);
 
+	/**
+	 * Generates all pseudolegal moves of the active side as packed moves,
+	 * without allocating any objects. The moves may leave the own king in
+	 * check, castling moves are always legal. The flags of the moves are set,
+	 * see <code>MoveHelper</code>.
+	 * 
+	 * @param moves
+	 *            the buffer for the moves, at least
+	 *            <code>MoveHelper.MAX_MOVES</code> long
+	 * @return the number of generated moves
+	 */
+	public int generateMoves(int[] moves);
+
+	/**
+	 * Generates the pseudolegal captures and promotions of the active side as
+	 * packed moves, without generating the quiet moves. Like
+	 * <code>generateMoves()</code>, the moves may leave the own king in
+	 * check, the legality is checked by the caller with isLegal() for the
+	 * moves, which are actually played.
+	 * 
+	 * @param moves
+	 *            the buffer for the moves, at least
+	 *            <code>MoveHelper.MAX_MOVES</code> long
+	 * @return the number of generated moves
+	 */
+	public int generateCaptures(int[] moves);
+
+	/**
+	 * Generates all legal moves of the active side as packed moves. The
+	 * checking and the pinned pieces are computed once, such that a move has
+	 * only to be tested against them: in check only moves, which capture the
+	 * checking piece or block its line, and king moves are generated, and a
+	 * pinned piece moves only along the line of the pin. Only king moves and
+	 * en passant captures are checked individually.
+	 * 
+	 * @param moves
+	 *            the buffer for the moves, at least
+	 *            <code>MoveHelper.MAX_MOVES</code> long
+	 * @return the number of generated moves
+	 */
+	public int generateLegalMoves(int[] moves);
+
+	/**
+	 * checks, if a packed move is a pseudolegal move of the active side, e.g.
+	 * a move from the transposition table, which has not been generated in
+	 * this position. Only the moves of the piece on the source square are
+	 * generated. The flags of the move are ignored.
+	 * 
+	 * @param move
+	 *            the packed move
+	 * @return the move as generated by generateMoves(), including its flags,
+	 *         NO_MOVE if the move is not pseudolegal.
+	 */
+	public int getPseudolegalMove(int move);
+
 	/**
 	 * Computes all possible moves for the active side to a specific square.
 	 * Moves, where the active color is check, are invalid and got deleted.
@@ -284,15 +369,32 @@ public interface IPosition {
 	public List<IMove> generateCaptures();
 
 	/**
-	 * Since AnalysisResults are stored in the Transposition Tables
-	 * (ResultCache), it is important to ensure that the AnalysisResult
-	 * corresponding to the actual position should be used, if there are
-	 * collisions with hashvalues. Therefore a second one (this one) is created
-	 * to identify the position and these problems unlikely.
+	 * Returns the 64 bit Zobrist key of the position, which is maintained
+	 * incrementally by all board changes. It is used as key for the
+	 * Transposition Table (ResultCache).
 	 * 
-	 * @return a different hashvalue
+	 * @return the Zobrist key
 	 */
-	public long hashCode2();
+	public long getZobristKey();
+
+	/**
+	 * Returns the Zobrist key of the pawns of both sides, which is maintained
+	 * incrementally like the Zobrist key. It is used as key for the
+	 * PawnHashTable.
+	 * 
+	 * @return the pawn key
+	 */
+	public long getPawnKey();
+
+	/**
+	 * Returns the material and the piece-square values of all pieces, tapered
+	 * between middlegame and endgame by the phase of the game, see
+	 * <code>PieceSquareTables</code>. The value is maintained incrementally by
+	 * all board changes.
+	 * 
+	 * @return the score in favor of white
+	 */
+	public int getPieceSquareScore();
 
 	/**
 	 * computes all information and stores them, which is needed for fast board
@@ -306,6 +408,30 @@ public interface IPosition {
 
 	boolean isCheckAfterMove(IMove move);
 
+	/**
+	 * checks, if the own king is in check after a packed move.
+	 * 
+	 * @param move
+	 *            the packed move
+	 * @return true, if the move is illegal, because the own king is in check
+	 */
+	boolean isCheckAfterMove(int move);
+
+	/**
+	 * checks, if a pseudolegal packed move is legal. The checking and the
+	 * pinned pieces are computed once per position, at the first call after
+	 * a move has been done or undone, and are kept until the position is
+	 * left. Then only king moves, en passant captures and moves of pinned
+	 * pieces are tested with isCheckAfterMove(), the other moves are legal,
+	 * if they resolve a check.
+	 * 
+	 * @param move
+	 *            a pseudolegal move of the active side, as returned by
+	 *            generateMoves(), generateCaptures() or getPseudolegalMove()
+	 * @return true, if the move does not leave the own king in check
+	 */
+	boolean isLegal(int move);
+
 	void getPotentialAttackersTo(int square, Piece attacking_dir,
 			List<IMove> result);
 
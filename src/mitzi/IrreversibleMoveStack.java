@@ -1,32 +1,53 @@
 package mitzi;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * This class represents a stack, storing the information, which cannot be
- * reverted only with a given move. It is implemented as a LinkedList containing
- * a class which stores the half move clock, the castling, the en passant target
- * and the captured piece. (en passant captures does not count as capture). The
- * elements should be accessed via irr_move_info.removeLast();
+ * reverted only with a given move. For every move the half move clock, the
+ * castling, the en passant target, the captured piece (en passant captures does
+ * not count as capture), the cached check status and the Zobrist key are
+ * stored. The entries are kept in preallocated arrays indexed by the ply, the
+ * castling rights are packed into a bitmask, such that adding and removing an
+ * entry does not allocate any objects. The information of the last entry is
+ * read with the getters before the entry is removed with
+ * <code>removeLast()</code>. Every position has its own stack, such that
+ * positions can be used by different threads.
  */
 public class IrreversibleMoveStack {
 
-	static public class MoveInfo {
+	/**
+	 * the initial number of entries, the arrays grow if needed.
+	 */
+	private static final int INITIAL_CAPACITY = 128;
 
-		int half_move_clock;
-		int[] castling = new int[4];
-		int en_passant_square;
-		Piece capture;
-		Boolean is_check;
+	/**
+	 * the squares of the king after castling, in the same order as
+	 * <code>Position.castling</code>
+	 */
+	private static final int[] CASTLING_SQUARES = { 31, 71, 38, 78 };
 
-	}
+	/**
+	 * the number of entries
+	 */
+	private int size = 0;
+
+	private int[] half_move_clock = new int[INITIAL_CAPACITY];
 
 	/**
-	 * the stack containing the information
+	 * bit i is set, if castling[i] is allowed.
 	 */
-	static public LinkedList<MoveInfo> irr_move_info = new LinkedList<MoveInfo>();
+	private byte[] castling = new byte[INITIAL_CAPACITY];
+
+	private int[] en_passant_square = new int[INITIAL_CAPACITY];
+
+	private Piece[] capture = new Piece[INITIAL_CAPACITY];
 
-	private IrreversibleMoveStack() {
+	private Boolean[] is_check = new Boolean[INITIAL_CAPACITY];
+
+	private long[] zobrist_key = new long[INITIAL_CAPACITY];
+
+	IrreversibleMoveStack() {
 	}
 
 	/**
@@ -40,18 +61,106 @@ public class IrreversibleMoveStack {
 	 *            the en passant target square
 	 * @param capture
 	 *            the piece, which got captured (null if no capture)
+	 * @param is_check
+	 *            the cached check status
+	 * @param zobrist_key
+	 *            the Zobrist key before the move
+	 */
+	public void addInfo(int half_move_clock, int[] castling,
+			int en_passant_square, Piece capture, Boolean is_check,
+			long zobrist_key) {
+		if (size == this.zobrist_key.length)
+			grow();
+
+		int castling_bits = 0;
+		for (int i = 0; i < 4; i++)
+			if (castling[i] != -1)
+				castling_bits |= 1 << i;
+
+		this.half_move_clock[size] = half_move_clock;
+		this.castling[size] = (byte) castling_bits;
+		this.en_passant_square[size] = en_passant_square;
+		this.capture[size] = capture;
+		this.is_check[size] = is_check;
+		this.zobrist_key[size] = zobrist_key;
+		size++;
+	}
+
+	/**
+	 * removes the last entry.
+	 */
+	public void removeLast() {
+		size--;
+		capture[size] = null;
+		is_check[size] = null;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the half move clock of the last entry
 	 */
-	static public void addInfo(int half_move_clock, int[] castling,
-			int en_passant_square, Piece capture, Boolean is_check) {
+	public int getHalfMoveClock() {
+		return half_move_clock[size - 1];
+	}
 
-		MoveInfo inf = new MoveInfo();
-		System.arraycopy(castling, 0, inf.castling, 0, 4);
-		inf.en_passant_square = en_passant_square;
-		inf.half_move_clock = half_move_clock;
-		inf.capture = capture;
-		inf.is_check = is_check;
+	/**
+	 * copies the castling rights of the last entry.
+	 * 
+	 * @param castling
+	 *            the castling array to fill, -1 if the castling is not allowed.
+	 */
+	public void getCastling(int[] castling) {
+		int castling_bits = this.castling[size - 1];
+		for (int i = 0; i < 4; i++)
+			castling[i] = (castling_bits & 1 << i) != 0 ? CASTLING_SQUARES[i]
+					: -1;
+	}
 
-		irr_move_info.addLast(inf);
+	/**
+	 * @return the en passant target square of the last entry
+	 */
+	public int getEnPassantSquare() {
+		return en_passant_square[size - 1];
+	}
+
+	/**
+	 * @return the captured piece of the last entry, null if no capture
+	 */
+	public Piece getCapture() {
+		return capture[size - 1];
+	}
+
+	/**
+	 * @return the cached check status of the last entry
+	 */
+	public Boolean getIsCheck() {
+		return is_check[size - 1];
+	}
+
+	/**
+	 * @return the Zobrist key of the last entry
+	 */
+	public long getZobristKey() {
+		return zobrist_key[size - 1];
+	}
+
+	/**
+	 * doubles the capacity of the stack.
+	 */
+	private void grow() {
+		int capacity = 2 * zobrist_key.length;
+		half_move_clock = Arrays.copyOf(half_move_clock, capacity);
+		castling = Arrays.copyOf(castling, capacity);
+		en_passant_square = Arrays.copyOf(en_passant_square, capacity);
+		capture = Arrays.copyOf(capture, capacity);
+		is_check = Arrays.copyOf(is_check, capacity);
+		zobrist_key = Arrays.copyOf(zobrist_key, capacity);
 	}
 
 }
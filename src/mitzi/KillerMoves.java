@@ -1,29 +1,38 @@
 package mitzi;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
 /**
  * this class saves for each ply a certain number (e.g. 2) of moves
  * (killermoves), which causes an alpha-beta cutoff. If more moves are saved,
  * that allowed, then they get deleted in the order they are saved (like
- * FIFO).This should improve the move ordering.
+ * FIFO).This should improve the move ordering. Every search thread should use
+ * its own instance.
+ * 
+ * The killer moves are packed moves (see MoveHelper) in a fixed table, such
+ * that neither a probe nor an update allocates any objects.
  * 
  */
 public class KillerMoves {
 
 	/**
-	 * a map from a ply to the killermoves.
+	 * the maximal ply, for which killer moves are saved
 	 */
-	private static Map<Integer, LinkedList<IMove>> killer_moves = new HashMap<Integer, LinkedList<IMove>>(
-			35);
+	static final int MAX_PLY = 256;
 
 	/**
 	 * number of killermoves saved
 	 */
-	private static int MAX_SIZE = 2;
+	static final int MAX_SIZE = 2;
+
+	/**
+	 * the killer moves of each ply, the newest first. Empty slots are
+	 * MoveHelper.NO_MOVE.
+	 */
+	private final int[][] killer_moves = new int[MAX_PLY][MAX_SIZE];
+
+	/**
+	 * the killer moves of the plies beyond MAX_PLY
+	 */
+	private static final int[] NO_KILLER_MOVES = new int[0];
 
 	KillerMoves() {
 	};
@@ -34,59 +43,46 @@ public class KillerMoves {
 	 * 
 	 * @param ply
 	 *            the plys from root node
-	 * @return a list of killer moves.
-	 */
-	static LinkedList<IMove> getKillerMoves(int ply) {
-		LinkedList<IMove> k_m = killer_moves.get(ply);
-		if (k_m == null)
-			k_m = new LinkedList<IMove>();
-		return k_m;
-	}
-
-	/**
-	 * add a new killermove, if more moves are saved than MAX_SIZE, the first
-	 * killermove got removed.
-	 * 
-	 * @param ply
-	 *            depth in the search tree
-	 * @param move
-	 *            the move to be added
+	 * @return the killer moves, the newest first, empty slots are NO_MOVE. The
+	 *         array is part of the table and must not be modified.
 	 */
-	static void addKillerMove(int ply, IMove move) {
-		LinkedList<IMove> k_m = killer_moves.get(ply);
-		if (k_m == null)
-			k_m = new LinkedList<IMove>();
-		if (k_m.size() == MAX_SIZE)
-			k_m.iterator().remove();
-
-		k_m.add(move);
+	int[] getKillerMoves(int ply) {
+		if (ply >= MAX_PLY)
+			return NO_KILLER_MOVES;
+		return killer_moves[ply];
 	}
 
 	/**
-	 * add a new killermove, if more moves are saved than MAX_SIZE, the first
-	 * killermove got removed.
+	 * add a new killermove, if more moves are saved than MAX_SIZE, the oldest
+	 * killermove got removed. A move, which is already a killer move, is not
+	 * added again.
 	 * 
 	 * @param ply
 	 *            depth in the search tree
 	 * @param move
-	 *            the move to be added
-	 * @param entry
-	 *            if available the old entry can be used for faster update. This
-	 *            should be a reference to the old element.
+	 *            the packed move to be added
 	 */
-	static void addKillerMove(int ply, IMove move, List<IMove> entry) {
-		if (entry.size() == MAX_SIZE)
-			entry.iterator().remove();
-		entry.add(move);
+	void addKillerMove(int ply, int move) {
+		if (ply >= MAX_PLY)
+			return;
+		int[] k_m = killer_moves[ply];
+		for (int i = 0; i < MAX_SIZE; i++)
+			if (MoveHelper.isSameMove(k_m[i], move))
+				return;
+		System.arraycopy(k_m, 0, k_m, 1, MAX_SIZE - 1);
+		k_m[0] = move;
 	}
 
 	/**
 	 * updates the killermoves after the best move was found, i.e. all moves are
 	 * shifted from depth -> depth -2
 	 */
-	static void updateKillerMove() {
-		for (int i = 2; killer_moves.containsKey(i); i++)
-			killer_moves.put(i - 2, killer_moves.get(i));
-
+	void updateKillerMove() {
+		for (int i = 2; i < MAX_PLY; i++)
+			System.arraycopy(killer_moves[i], 0, killer_moves[i - 2], 0,
+					MAX_SIZE);
+		for (int i = MAX_PLY - 2; i < MAX_PLY; i++)
+			for (int j = 0; j < MAX_SIZE; j++)
+				killer_moves[i][j] = MoveHelper.NO_MOVE;
 	}
 }
@@ -1,13 +1,18 @@
 package mitzi;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
 
 import static mitzi.MateScores.*;
@@ -21,13 +26,129 @@ import mitzi.UCIReporter.InfoType;
  * on top-level. The board evaluation is moved to a separate class
  * BoardAnalyzer.
  * 
+ * All state of a search is owned by the brain and its threads, such that
+ * several instances can search independently in the same JVM. Only the
+ * Transposition Table (ResultCache) is shared by all instances.
+ * 
+ * If more than one thread is used, the search is parallelized with Lazy SMP:
+ * all threads search the same position independently on their own copy and
+ * share only the Transposition Table. The helper threads search with slightly
+ * different depths and move orders, such that they fill the Transposition
+ * Table with results, which are useful for the main thread. Only the result of
+ * the main thread is used and reported.
+ * 
+ * Alternatively the search can be parallelized with Young Brothers Wait
+ * (YBWC): at a node the first move is searched alone, then the remaining moves
+ * are searched in parallel in a ForkJoinPool. If one of them causes a beta
+ * cutoff, the search of its siblings is aborted.
+ * 
  */
 public class MitziBrain implements IBrain {
 
 	/**
 	 * maximal number of threads
 	 */
-	private static final int THREAD_POOL_SIZE = 1;
+	public static final int MAX_THREADS = 128;
+
+	/**
+	 * the algorithms for the parallel search
+	 */
+	public enum SMPMode {
+		/**
+		 * independent threads, sharing the Transposition Table
+		 */
+		LAZY_SMP,
+		/**
+		 * Young Brothers Wait, splitting the tree at nodes, where the first move
+		 * has been searched
+		 */
+		YBWC
+	}
+
+	/**
+	 * the expected type of a node in the Principal Variation Search
+	 * 
+	 * @see <a href="http://chessprogramming.wikispaces.com/Node+Types">Node
+	 *      Types</a>
+	 */
+	enum NodeType {
+		/**
+		 * a node on the principal variation, searched with an open window
+		 */
+		PV,
+		/**
+		 * a node, where a beta cutoff is expected
+		 */
+		CUT,
+		/**
+		 * a node, where all moves are expected to fail low
+		 */
+		ALL;
+
+		/**
+		 * @return the expected type of the first child
+		 */
+		NodeType firstChild() {
+			return this == PV ? PV : this == CUT ? ALL : CUT;
+		}
+	}
+
+	/**
+	 * the minimal remaining depth of a node, such that YBWC searches its moves
+	 * in parallel
+	 */
+	private static final int MIN_SPLIT_DEPTH = 3;
+
+	/**
+	 * the minimal remaining depth of a node, such that a null move is tried
+	 */
+	private static final int NULL_MOVE_MIN_DEPTH = 2;
+
+	/**
+	 * the maximal number of knights, bishops, rooks and queens of the side to
+	 * move, such that a successful null move is verified by a normal search.
+	 */
+	private static final int NULL_MOVE_VERIFICATION_PIECES = 2;
+
+	/**
+	 * the minimal remaining depth of a node, such that late moves are reduced
+	 */
+	private static final int LMR_MIN_DEPTH = 3;
+
+	/**
+	 * the default constant part of the late move reductions, in hundredths
+	 * of a ply
+	 */
+	public static final int DEFAULT_LMR_BASE = 75;
+
+	/**
+	 * the default divisor of log(depth) * log(move number) in the late move
+	 * reductions, in hundredths
+	 */
+	public static final int DEFAULT_LMR_DIVISOR = 225;
+
+	/**
+	 * the maximal constant part and divisor of the late move reductions
+	 */
+	public static final int MAX_LMR_PARAMETER = 1000;
+
+	/**
+	 * the maximal remaining depth of a node, such that futility pruning,
+	 * reverse futility pruning and razoring are applied
+	 */
+	private static final int FRONTIER_MAX_DEPTH = 3;
+
+	/**
+	 * the default margins per ply of remaining depth of futility pruning,
+	 * reverse futility pruning and razoring in centipawns
+	 */
+	public static final int DEFAULT_FUTILITY_MARGIN = 125,
+			DEFAULT_REVERSE_FUTILITY_MARGIN = 120, DEFAULT_RAZOR_MARGIN = 250;
+
+	/**
+	 * the maximal margin per ply in centipawns
+	 */
+	public static final int MAX_MARGIN = 2000;
 
 	/**
 	 * unit for time management
@@ -47,26 +168,202 @@ public class MitziBrain implements IBrain {
 	/**
 	 * the currently best result
 	 */
-	private AnalysisResult result;
+	private volatile AnalysisResult result;
+
+	/**
+	 * the number of search threads
+	 */
+	private int threads = 1;
+
+	/**
+	 * the algorithm for the parallel search
+	 */
+	private SMPMode smp_mode = SMPMode.LAZY_SMP;
+
+	/**
+	 * true, if the search uses <code>BitboardPosition</code> instead of
+	 * <code>Position</code>. The default can be set with
+	 * -Dmitzi.bitboards=true.
+	 */
+	private boolean use_bitboards = Boolean.getBoolean("mitzi.bitboards");
+
+	/**
+	 * true, if the search sends information to UCI. It can be disabled for
+	 * searches, which are not shown by a GUI, e.g. in benchmarks.
+	 */
+	private boolean uci_output = true;
+
+	/**
+	 * true, if a null move cutoff in an endgame is verified by a reduced
+	 * search, because of zugzwang.
+	 */
+	private boolean null_move_verification = true;
+
+	/**
+	 * the parameters of the late move reductions, in hundredths
+	 */
+	private int lmr_base = DEFAULT_LMR_BASE, lmr_divisor = DEFAULT_LMR_DIVISOR;
+
+	/**
+	 * the late move reductions in plies, indexed by the remaining depth and
+	 * the number of the move in the move order
+	 */
+	private int[][] reductions = computeReductions(lmr_base, lmr_divisor);
+
+	/**
+	 * the margins per ply of remaining depth of futility pruning, reverse
+	 * futility pruning and razoring in centipawns, 0 disables the pruning.
+	 */
+	private int futility_margin = DEFAULT_FUTILITY_MARGIN,
+			reverse_futility_margin = DEFAULT_REVERSE_FUTILITY_MARGIN,
+			razor_margin = DEFAULT_RAZOR_MARGIN;
+
+	/**
+	 * true, if the current search splits the tree (YBWC).
+	 */
+	private boolean split_search;
+
+	/**
+	 * the killer moves of each search thread, they are kept between the
+	 * searches. They are allocated for threads + 1 search threads: with Lazy
+	 * SMP the tasks use the indices 0 to threads - 1, with YBWC the root task
+	 * uses index 0 and the worker threads use the indices 1 to threads.
+	 */
+	private KillerMoves[] killer_moves;
+
+	/**
+	 * the history tables of each search thread, indexed like killer_moves.
+	 */
+	private HistoryTable[] history_tables;
+
+	/**
+	 * the pawn hash tables of each search thread, indexed like killer_moves.
+	 */
+	private PawnHashTable[] pawn_tables;
+
+	/**
+	 * true for the indices of the tables, which are used by a YBWC worker
+	 * thread.
+	 */
+	private boolean[] worker_tables_taken;
+
+	/**
+	 * the search states of all threads of the current search, the main thread
+	 * has number 0. With YBWC every worker thread adds its own state.
+	 */
+	private List<PositionEvaluator> evaluators = new CopyOnWriteArrayList<PositionEvaluator>();
 
 	/**
 	 * the executor for the tasks
 	 */
-	private ExecutorService exe;
+	private volatile ExecutorService exe;
+
+	/**
+	 * true, if stop() has been called since the last call of set(). The search
+	 * runs in its own thread, so stop() may be called, before search() has
+	 * created the executor of the new search.
+	 */
+	private volatile boolean stop_requested;
 
 	/**
 	 * the current game state
 	 */
 	private GameState game_state;
 
+	/**
+	 * the last PV sent to UCI
+	 */
+	private String last_pv = "";
+
+	/**
+	 * The search task of a single thread. Each task searches on its own copy of
+	 * the position with its own killer moves, board analyzer and counters.
+	 */
 	private class PositionEvaluator implements Runnable {
 
 		private final IPosition position;
 		private final int searchDepth;
 
-		public PositionEvaluator(final IPosition position, final int depth) {
+		/**
+		 * the number of the thread, the main thread has number 0.
+		 */
+		private final int thread_id;
+
+		/**
+		 * the killer moves of this thread
+		 */
+		private final KillerMoves killer_moves;
+
+		/**
+		 * the history and countermoves of this thread
+		 */
+		private final HistoryTable history;
+
+		/**
+		 * the board analyzer for board evaluation
+		 */
+		private final BoardAnalyzer board_analyzer;
+
+		/**
+		 * counts the number of evaluated board
+		 */
+		private volatile long eval_counter;
+
+		/**
+		 * counts the number of found boards in the transposition table.
+		 */
+		private long table_counter;
+
+		/**
+		 * the buffers of the nodes in the recursion of negaMax, they are
+		 * reused for all nodes of this thread.
+		 */
+		private NodeBuffers[] frames = new NodeBuffers[KillerMoves.MAX_PLY];
+
+		/**
+		 * the index of the buffers of the next node in the recursion. With
+		 * YBWC a thread, which waits for the result of a split task, searches
+		 * other split tasks on top of its own recursion, so the buffers are
+		 * indexed by the recursion and not by the ply.
+		 */
+		private int next_frame;
+
+		public PositionEvaluator(final IPosition position, final int depth,
+				final int thread_id, final KillerMoves killer_moves,
+				final HistoryTable history, final PawnHashTable pawn_table) {
 			this.position = position;
 			this.searchDepth = depth;
+			this.thread_id = thread_id;
+			this.killer_moves = killer_moves;
+			this.history = history;
+			board_analyzer = new BoardAnalyzer(pawn_table);
+			board_analyzer.setCastling(position);
+		}
+
+		/**
+		 * @return the buffers of a node in the recursion, they are created on
+		 *         demand.
+		 */
+		private NodeBuffers getFrame(int frame) {
+			if (frame == frames.length)
+				frames = Arrays.copyOf(frames, 2 * frame);
+			if (frames[frame] == null)
+				frames[frame] = new NodeBuffers();
+			return frames[frame];
+		}
+
+		/**
+		 * @return true, if this is the task of the main thread.
+		 */
+		private boolean isMainThread() {
+			return thread_id == 0;
+		}
+
+		/**
+		 * @return the number of evaluated boards in negaMax and quiesce
+		 */
+		private long getNodes() {
+			return eval_counter + board_analyzer.eval_counter_seldepth;
 		}
 
 		@Override
@@ -79,48 +376,451 @@ public class MitziBrain implements IBrain {
 				int asp_window = 25; // often 50 or 25 is used
 				int factor = 2; // factor for increasing if out of bounds
 
+				// every second helper thread starts one ply deeper
+				int start_depth = Math.min(1 + thread_id % 2, searchDepth);
+
 				// iterative deepening
-				for (int current_depth = 1; current_depth <= searchDepth; current_depth++) {
+				for (int current_depth = start_depth; current_depth <= searchDepth; current_depth++) {
 					table_counter = 0;
-					BoardAnalyzer.table_counter = 0;
+					board_analyzer.table_counter = 0;
 
-					result = negaMax(position, current_depth, current_depth,
-							alpha, beta);
-					position.updateAnalysisResult(result);
+					AnalysisResult new_result = negaMax(position,
+							current_depth, current_depth, 0, alpha, beta,
+							null, MoveHelper.NO_MOVE, NodeType.PV);
+					position.updateAnalysisResult(new_result);
+					if (isMainThread())
+						result = new_result;
 
-					if (result.score == POS_INF || result.score == NEG_INF) {
+					if (new_result.score == POS_INF
+							|| new_result.score == NEG_INF) {
 						break;
 					}
 
 					// If Value is out of bounds, redo search with larger
 					// bounds, but with the same variation tree
-					if (result.score <= alpha) {
+					if (new_result.score <= alpha) {
 						alpha -= factor * asp_window;
 						current_depth--;
-						UCIReporter
-								.sendInfoString("Boards found: "
-										+ (table_counter + BoardAnalyzer.table_counter));
+						sendBoardsFound();
 						continue;
-					} else if (result.score >= beta) {
+					} else if (new_result.score >= beta) {
 						beta += factor * asp_window;
 						current_depth--;
-						UCIReporter
-								.sendInfoString("Boards found: "
-										+ (table_counter + BoardAnalyzer.table_counter));
+						sendBoardsFound();
 						continue;
 					}
 
-					alpha = result.score - asp_window;
-					beta = result.score + asp_window;
+					alpha = new_result.score - asp_window;
+					beta = new_result.score + asp_window;
 
-					UCIReporter.sendInfoString("Boards found: "
-							+ (table_counter + BoardAnalyzer.table_counter));
+					sendBoardsFound();
 				}
 			} catch (InterruptedException e) {
+			} finally {
+				// the helper threads are not needed anymore
+				if (isMainThread())
+					exe.shutdownNow();
 			}
 
 		}
 
+		/**
+		 * sends the number of found positions in the Transposition Table, only
+		 * for the main thread.
+		 */
+		private void sendBoardsFound() {
+			if (isMainThread())
+				sendInfoString("Boards found: "
+						+ (table_counter + board_analyzer.table_counter));
+		}
+
+		/**
+		 * NegaMax with Alpha Beta Pruning and Transposition Tables
+		 * 
+		 * The moves are searched with Principal Variation Search: the first
+		 * move is searched with the full window, the remaining moves with a
+		 * null window around alpha. Only if such a move fails high, it is
+		 * searched again with the full window.
+		 * 
+		 * @see <a
+		 *      href="http://en.wikipedia.org/wiki/Negamax#NegaMax_with_Alpha_Beta_Pruning_and_Transposition_Tables">NegaMax
+		 *      with Alpha Beta Pruning and Transposition Tables</a>
+		 * @param position
+		 *            the position to evaluate
+		 * @param total_depth
+		 *            the total depth to search
+		 * @param depth
+		 *            the remaining depth to search
+		 * @param ply
+		 *            the distance of the node from the root. Because of the
+		 *            reductions it does not follow from the remaining depth.
+		 * @param alpha
+		 *            the alpha value
+		 * @param beta
+		 *            the beta value
+		 * @param sp
+		 *            the nearest split point above this node, null if there is
+		 *            none.
+		 * @param previous_move
+		 *            the packed move, which lead to this node, NO_MOVE at the
+		 *            root.
+		 * @param node_type
+		 *            the expected type of the node
+		 * @return returns the result of the evaluation, stored in the class
+		 *         AnalysisResult
+		 * 
+		 * @throws InterruptedException
+		 *             if the search is stopped or the search of the split point
+		 *             is aborted.
+		 */
+		private AnalysisResult negaMax(IPosition position, int total_depth,
+				int depth, int ply, int alpha, int beta, SplitPoint sp,
+				int previous_move, NodeType node_type)
+				throws InterruptedException {
+
+			if (Thread.interrupted() || (sp != null && sp.isAborted())) {
+				throw new InterruptedException();
+			}
+			// ---------------------------------------------------------------------------------------
+			// whose move is it?
+			Side side = position.getActiveColor();
+			int side_sign = Side.getSideSign(side);
+
+			// ---------------------------------------------------------------------------------------
+			int alpha_old = alpha;
+
+			// Cache lookup (Transposition Table)
+			AnalysisResult entry = ResultCache.getResult(position);
+			if (entry != null && entry.plys_to_eval0 >= depth) {
+				table_counter++;
+				if (entry.flag == Flag.EXACT)
+					return entry.tinyCopy();
+				else if (entry.flag == Flag.LOWERBOUND)
+					alpha = Math.max(alpha, entry.score * side_sign);
+				else if (entry.flag == Flag.UPPERBOUND)
+					beta = Math.min(beta, entry.score * side_sign);
+
+				if (alpha >= beta)
+					return entry.tinyCopy();
+			}
+
+			// ---------------------------------------------------------------------------------------
+			// base of complete tree search
+			if (depth == 0) {
+				// position is a leaf node
+				return board_analyzer.evalBoard(position, alpha, beta);
+			}
+
+			// ---------------------------------------------------------------------------------------
+			// pruning near the horizon, based on the static evaluation. Not
+			// applied on the principal variation, in check or with mate
+			// scores in the window.
+			boolean in_check = position.isCheckPosition();
+			boolean futile = false;
+			// the highest value, which a pruned quiet move could reach
+			int futility_value = NEG_INF;
+			if (node_type != NodeType.PV && depth <= FRONTIER_MAX_DEPTH
+					&& !in_check && alpha > NEG_INF && beta < POS_INF) {
+				eval_counter++;
+				int static_eval = board_analyzer.eval0(position).score
+						* side_sign;
+
+				// Reverse Futility Pruning: the side to move is so far ahead,
+				// that the opponent cannot catch up within the remaining depth
+				int value = static_eval - reverse_futility_margin * depth;
+				if (reverse_futility_margin > 0 && value >= beta)
+					return new AnalysisResult(value * side_sign, false, false,
+							0, 0, Flag.LOWERBOUND);
+
+				// Razoring: the side to move is so far behind, that only
+				// captures can help, checked by the quiescence search
+				if (razor_margin > 0
+						&& static_eval + razor_margin * depth < alpha) {
+					int razor_alpha = alpha - razor_margin * depth;
+					AnalysisResult result = board_analyzer.evalBoard(position,
+							razor_alpha, razor_alpha + 1);
+					if (result.score * side_sign <= razor_alpha)
+						return result;
+				}
+
+				// Futility Pruning: quiet moves cannot raise alpha
+				futility_value = static_eval + futility_margin * depth;
+				futile = futility_margin > 0 && futility_value <= alpha;
+			}
+
+			// ---------------------------------------------------------------------------------------
+			// Null Move Pruning: if the side to move passes and the opponent
+			// still cannot reach beta with a reduced search, the node will
+			// fail high. Not tried at the root, after a null move, in check or
+			// without pieces besides the pawns (zugzwang).
+			if (node_type != NodeType.PV && depth >= NULL_MOVE_MIN_DEPTH
+					&& previous_move != MoveHelper.NO_MOVE && beta < POS_INF
+					&& !in_check) {
+				int pieces = getNumberOfPieces(position, side);
+				if (pieces > 0) {
+					int reduction = depth >= 7 ? 3 : 2;
+					// like the other moves, the null move is not undone, if the
+					// search is interrupted, the position is discarded then
+					position.doNullMove();
+					AnalysisResult result = negaMax(position, total_depth,
+							Math.max(depth - 1 - reduction, 0), ply + 1,
+							-beta, -beta + 1, sp, MoveHelper.NO_MOVE,
+							node_type.firstChild());
+					position.undoNullMove();
+					int value = result.score * side_sign;
+
+					// in endgames the null move may be the best move, the
+					// cutoff is checked by a reduced search without null move
+					if (value >= beta && null_move_verification
+							&& pieces <= NULL_MOVE_VERIFICATION_PIECES)
+						value = negaMax(position, total_depth, depth - reduction,
+								ply, beta - 1, beta, sp, MoveHelper.NO_MOVE,
+								node_type).score
+								* side_sign;
+
+					if (value >= beta)
+						return new AnalysisResult(beta * side_sign, false,
+								false, 0, 0, Flag.LOWERBOUND);
+				}
+			}
+
+			// ---------------------------------------------------------------------------------------
+			// the moves are generated and sorted lazily: first the move from
+			// the Transposition Table, then the captures, the killer moves and
+			// the quiet moves
+			int[] killers = killer_moves.getKillerMoves(ply);
+
+			int hash_move = entry != null ? MoveHelper
+					.fromMove(entry.best_move) : MoveHelper.NO_MOVE;
+			int frame = next_frame++;
+			NodeBuffers buffers = getFrame(frame);
+			MovePicker picker = buffers.picker;
+			picker.reset(position, hash_move, killers,
+					history.getCounterMove(previous_move), history, in_check);
+
+			// the helper threads use different move orders at the root, the
+			// move from the Transposition Table stays first
+			int[] moves = null;
+			int moves_count = 0, moves_index = 0;
+			if (!isMainThread() && depth == total_depth) {
+				moves = new int[MoveHelper.MAX_MOVES];
+				moves_count = drain(picker, moves, 0);
+				int first = moves_count > 0
+						&& MoveHelper.isSameMove(moves[0], hash_move) ? 1 : 0;
+				if (moves_count > first)
+					rotate(moves, first, moves_count, thread_id
+							% (moves_count - first));
+			}
+			// ---------------------------------------------------------------------------------------
+
+			// create new AnalysisResult and parent
+			AnalysisResult parent = null;
+
+			int best_value = NEG_INF; // this starts always at negative!
+
+			int i = 0;
+			// the quiet moves, which have been searched without a cutoff
+			int[] searched_quiets = buffers.searched_quiets;
+			int searched_quiets_count = 0;
+			SplitPoint split = null;
+			List<SplitTask> tasks = null;
+			int task_index = 0;
+			// alpha beta search
+			while (true) {
+				int move = MoveHelper.NO_MOVE;
+				AnalysisResult result;
+
+				if (split == null) {
+					if (moves != null)
+						move = moves_index < moves_count ? moves[moves_index++]
+								: MoveHelper.NO_MOVE;
+					else
+						move = picker.next();
+					if (move == MoveHelper.NO_MOVE)
+						break;
+					if (!position.isLegal(move))
+						continue;
+
+					// Young Brothers Wait: the first move has been searched,
+					// the remaining moves are searched in parallel
+					if (split_search && i > 0 && depth >= MIN_SPLIT_DEPTH) {
+						split = new SplitPoint(sp, alpha, beta);
+						int[] siblings = buffers.siblings;
+						siblings[0] = move;
+						int siblings_count = 1;
+						if (moves != null)
+							while (moves_index < moves_count)
+								siblings[siblings_count++] = moves[moves_index++];
+						else
+							siblings_count = drain(picker, siblings,
+									siblings_count);
+
+						// the legality is tested here, where the pins of the
+						// node have already been computed
+						tasks = new ArrayList<SplitTask>(siblings_count);
+						for (int k = 0; k < siblings_count; k++) {
+							if (k > 0 && !position.isLegal(siblings[k]))
+								continue;
+							SplitTask task = new SplitTask(
+									position.returnCopy(), siblings[k],
+									total_depth, depth, ply, i + tasks.size(),
+									node_type, futile, split);
+							task.fork();
+							tasks.add(task);
+						}
+					}
+				}
+
+				if (split != null) {
+					if (task_index == tasks.size())
+						break;
+					SplitTask task = tasks.get(task_index++);
+					move = task.move;
+					try {
+						result = task.join();
+					} catch (CancellationException e) {
+						throw new InterruptedException();
+					}
+					// the move is futile or its search has been aborted. A
+					// futile move could reach the futility value.
+					if (result == null) {
+						if (futile)
+							best_value = Math.max(best_value, futility_value);
+						continue;
+					}
+				} else {
+					// output currently searched move to UCI
+					if (uci_output && isMainThread() && depth == total_depth
+							&& total_depth >= 6)
+						UCIReporter.sendInfoCurrMove(MoveHelper.toMove(move),
+								i + 1);
+
+					position.doMove(move);
+					// a legal move has been searched, so the pruning does not
+					// lead to a false mate
+					if (futile && i > 0 && isQuiet(move)
+							&& !position.isCheckPosition()) {
+						position.undoMove(move);
+						// the fail low bound of the node must include the
+						// value, which the pruned move could reach
+						best_value = Math.max(best_value, futility_value);
+						continue;
+					}
+					if (i == 0) {
+						result = negaMax(position, total_depth, depth - 1,
+								ply + 1, -beta, -alpha, sp, move,
+								node_type.firstChild());
+					} else {
+						// Principal Variation Search: null window, late quiet
+						// moves with reduced depth
+						int reduction = getReduction(position, depth, i, move,
+								in_check, node_type);
+						result = negaMax(position, total_depth, depth - 1
+								- reduction, ply + 1, -alpha - 1, -alpha, sp,
+								move, NodeType.CUT);
+						int value = result.score * side_sign;
+						if (reduction > 0 && value > alpha) {
+							result = negaMax(position, total_depth, depth - 1,
+									ply + 1, -alpha - 1, -alpha, sp, move,
+									NodeType.CUT);
+							value = result.score * side_sign;
+						}
+						if (value > alpha && value < beta)
+							result = negaMax(position, total_depth, depth - 1,
+									ply + 1, -beta, -alpha, sp, move,
+									NodeType.PV);
+					}
+					position.undoMove(move);
+				}
+
+				int negaval = result.score * side_sign;
+
+				// better variation found
+				if (negaval > best_value || parent == null) {
+
+					best_value = negaval;
+
+					// update AnalysisResult
+					byte old_seldepth = (parent == null ? 0
+							: parent.plys_to_seldepth);
+					parent = result; // change reference
+					parent.best_move = MoveHelper.toMove(move);
+					parent.plys_to_eval0 = (byte) depth;
+					if (best_value != POS_INF) {
+						parent.plys_to_seldepth = (byte) Math.max(old_seldepth,
+								parent.plys_to_seldepth);
+					}
+
+					// output to UCI
+					if (isMainThread() && depth == total_depth) {
+						position.updateAnalysisResult(parent);
+						game_state.getPosition().updateAnalysisResult(parent);
+						sendInfoPV();
+					}
+				}
+
+				// alpha beta cutoff
+				alpha = Math.max(alpha, negaval);
+				boolean quiet = isQuiet(move);
+				if (alpha >= beta) {
+					// set also KillerMove:
+					if (quiet) {
+						killer_moves.addKillerMove(ply, move);
+						history.addCutoff(side, move, previous_move, depth,
+								searched_quiets, searched_quiets_count);
+					}
+					break;
+				}
+				if (quiet)
+					searched_quiets[searched_quiets_count++] = move;
+
+				i++;
+			}
+
+			if (split != null) {
+				// abort the remaining siblings after a cutoff
+				split.abort();
+				// the results are incomplete, if the search of a parent node
+				// has been aborted
+				if (sp != null && sp.isAborted())
+					throw new InterruptedException();
+			}
+
+			// the buffers of this node are free again
+			next_frame = frame;
+
+			// check for mate and stalemate: there is no legal move
+			if (parent == null) {
+				eval_counter++;
+				if (position.isCheckPosition()) {
+					return new AnalysisResult(NEG_INF * side_sign, false, false, 0,
+							0, Flag.EXACT);
+				} else {
+					return new AnalysisResult(0, true, false, 0, 0, Flag.EXACT);
+				}
+			}
+
+			// the pruned moves may have raised the bound above the searched
+			// moves
+			if (best_value > parent.score * side_sign)
+				parent.score = (short) (best_value * side_sign);
+
+			// ---------------------------------------------------------------------------------------
+			// Transposition Table Store;
+			if (best_value <= alpha_old)
+				parent.flag = Flag.UPPERBOUND;
+			else if (best_value >= beta)
+				parent.flag = Flag.LOWERBOUND;
+			else
+				parent.flag = Flag.EXACT;
+
+			if (entry == null || entry.plys_to_eval0 <= depth)
+				ResultCache.setResult(position, parent);
+
+			return parent;
+
+		}
+
 		@Override
 		public String toString() {
 			return position.toString();
@@ -129,282 +829,664 @@ public class MitziBrain implements IBrain {
 	}
 
 	/**
-	 * counts the number of evaluated board
+	 * computes the table of the late move reductions: a move with number i in
+	 * the move order of a node with remaining depth d is reduced by base +
+	 * log(d) * log(i) / divisor plies.
+	 * 
+	 * @param base
+	 *            the constant part in hundredths of a ply
+	 * @param divisor
+	 *            the divisor in hundredths
+	 * @return the reductions, indexed by depth and move number
 	 */
-	private long eval_counter;
+	private static int[][] computeReductions(int base, int divisor) {
+		int[][] table = new int[KillerMoves.MAX_PLY][MoveHelper.MAX_MOVES];
+		for (int d = 1; d < table.length; d++)
+			for (int i = 1; i < table[d].length; i++)
+				table[d][i] = (int) (base / 100.0 + Math.log(d) * Math.log(i)
+						* 100.0 / divisor);
+		return table;
+	}
 
 	/**
-	 * counts the number of found boards in the transposition table.
+	 * Late Move Reductions: quiet moves late in the move order are searched
+	 * with reduced depth, unless the side to move was in check or the move
+	 * gives check. Nodes on the principal variation are reduced by one ply
+	 * less.
+	 * 
+	 * @see <a
+	 *      href="http://chessprogramming.wikispaces.com/Late+Move+Reductions">Late
+	 *      Move Reductions</a>
+	 * @param position
+	 *            the position after the move
+	 * @param depth
+	 *            the remaining depth of the node
+	 * @param move_number
+	 *            the number of the move in the move order, starting at 0
+	 * @param move
+	 *            the packed move
+	 * @param in_check
+	 *            true, if the side to move was in check before the move
+	 * @param node_type
+	 *            the expected type of the node
+	 * @return the reduction in plies, such that at least one ply remains
 	 */
-	private long table_counter;
+	private int getReduction(IPosition position, int depth, int move_number,
+			int move, boolean in_check, NodeType node_type) {
+		if (depth < LMR_MIN_DEPTH || in_check || !isQuiet(move)
+				|| position.isCheckPosition())
+			return 0;
+		int[][] table = reductions;
+		int reduction = table[Math.min(depth, table.length - 1)][Math.min(
+				move_number, MoveHelper.MAX_MOVES - 1)];
+		if (node_type == NodeType.PV)
+			reduction--;
+		return Math.max(0, Math.min(reduction, depth - 2));
+	}
 
 	/**
-	 * the board analyzer for board evaluation
+	 * @return true, if the packed move is neither a capture nor a promotion
 	 */
-	private IPositionAnalyzer board_analyzer = new BoardAnalyzer();
+	private static boolean isQuiet(int move) {
+		return !MoveHelper.isCapture(move)
+				&& MoveHelper.getPromotion(move) == null;
+	}
 
 	/**
-	 * the current time.
+	 * @return the number of knights, bishops, rooks and queens of a side
 	 */
-	private long start_mtime = System.currentTimeMillis();
-
-	private Timer timer;
-
-	@Override
-	public void set(GameState game_state) {
-		this.game_state = game_state;
-		this.eval_counter = 0;
-		this.table_counter = 0;
+	private static int getNumberOfPieces(IPosition position, Side side) {
+		return position.getNumberOfPiecesByColorAndType(side, Piece.KNIGHT)
+				+ position.getNumberOfPiecesByColorAndType(side, Piece.BISHOP)
+				+ position.getNumberOfPiecesByColorAndType(side, Piece.ROOK)
+				+ position.getNumberOfPiecesByColorAndType(side, Piece.QUEEN);
 	}
 
 	/**
-	 * @return the time, which passes since start_mtime
+	 * appends the remaining moves of a move picker to a buffer.
+	 * 
+	 * @param picker
+	 *            the move picker
+	 * @param moves
+	 *            the buffer
+	 * @param n
+	 *            the number of moves in the buffer
+	 * @return the new number of moves in the buffer
 	 */
-	private long runTime() {
-		return System.currentTimeMillis() - start_mtime;
+	private static int drain(MovePicker picker, int[] moves, int n) {
+		for (int move = picker.next(); move != MoveHelper.NO_MOVE; move = picker
+				.next())
+			moves[n++] = move;
+		return n;
 	}
 
 	/**
-	 * Sends updates about evaluation status to UCI GUI, namely the number of
-	 * searched board per second and the size of the Transposition Table in
-	 * permill of the maximal size.
+	 * rotates a range of moves to the left, like
+	 * <code>Collections.rotate(list, -distance)</code>.
 	 * 
+	 * @param moves
+	 *            the moves
+	 * @param from
+	 *            the first index of the range
+	 * @param to
+	 *            the index after the range
+	 * @param distance
+	 *            the distance, between 0 and the length of the range
 	 */
-	class UCIUpdater extends TimerTask {
-		private long old_mtime;
-		private long old_eval_counter;
-		private long old_eval_counter_seldepth;
-
-		@Override
-		public void run() {
-			long mtime = System.currentTimeMillis();
-
-			long eval_span_0 = eval_counter - old_eval_counter;
-			long eval_span_sel = BoardAnalyzer.eval_counter_seldepth
-					- old_eval_counter_seldepth;
-			long eval_span = eval_span_0 + eval_span_sel;
+	private static void rotate(int[] moves, int from, int to, int distance) {
+		int[] rotated = new int[to - from];
+		for (int k = from; k < to; k++)
+			rotated[k - from] = moves[from + (k - from + distance)
+					% (to - from)];
+		System.arraycopy(rotated, 0, moves, from, to - from);
+	}
 
-			if (old_mtime != 0) {
-				long time_span = mtime - old_mtime;
-				UCIReporter.sendInfoNum(InfoType.NPS, eval_span * 1000
-						/ time_span);
+	/**
+	 * The buffers of a node in the recursion of negaMax, which are reused by
+	 * the nodes of a search thread.
+	 */
+	private static class NodeBuffers {
 
-				UCIReporter.sendInfoNum(InfoType.HASHFULL,
-						ResultCache.getHashfull());
-			}
+		private final MovePicker picker = new MovePicker();
 
-			old_mtime = mtime;
-			old_eval_counter += eval_span_0;
-			old_eval_counter_seldepth += eval_span_sel;
+		/**
+		 * the quiet moves, which have been searched without a cutoff
+		 */
+		private final int[] searched_quiets = new int[MoveHelper.MAX_MOVES];
 
-		}
+		/**
+		 * the moves of a split point, which are searched in parallel
+		 */
+		private final int[] siblings = new int[MoveHelper.MAX_MOVES];
 	}
 
 	/**
-	 * NegaMax with Alpha Beta Pruning and Transposition Tables
-	 * 
-	 * @see <a
-	 *      href="http://en.wikipedia.org/wiki/Negamax#NegaMax_with_Alpha_Beta_Pruning_and_Transposition_Tables">NegaMax
-	 *      with Alpha Beta Pruning and Transposition Tables</a>
-	 * @param position
-	 *            the position to evaluate
-	 * @param total_depth
-	 *            the total depth to search
-	 * @param depth
-	 *            the remaining depth to search
-	 * @param alpha
-	 *            the alpha value
-	 * @param beta
-	 *            the beta value
-	 * @return returns the result of the evaluation, stored in the class
-	 *         AnalysisResult
-	 * 
-	 * @throws InterruptedException
+	 * A node of the YBWC search, whose remaining moves are searched in
+	 * parallel. The split points of the current variation are linked, such
+	 * that a cutoff aborts the search of the whole subtree.
 	 */
-	private AnalysisResult negaMax(IPosition position, int total_depth,
-			int depth, int alpha, int beta) throws InterruptedException {
+	private static class SplitPoint {
+
+		private final SplitPoint parent;
+
+		/**
+		 * the best value of the searched moves so far
+		 */
+		private volatile int alpha;
 
-		if (Thread.interrupted()) {
-			throw new InterruptedException();
+		private final int beta;
+
+		/**
+		 * true, if the remaining moves need not to be searched anymore.
+		 */
+		private volatile boolean aborted;
+
+		SplitPoint(SplitPoint parent, int alpha, int beta) {
+			this.parent = parent;
+			this.alpha = alpha;
+			this.beta = beta;
 		}
-		// ---------------------------------------------------------------------------------------
-		// whose move is it?
-		Side side = position.getActiveColor();
-		int side_sign = Side.getSideSign(side);
-
-		// ---------------------------------------------------------------------------------------
-		int alpha_old = alpha;
-
-		// Cache lookup (Transposition Table)
-		AnalysisResult entry = ResultCache.getResult(position);
-		if (entry != null && entry.plys_to_eval0 >= depth) {
-			table_counter++;
-			if (entry.flag == Flag.EXACT)
-				return entry.tinyCopy();
-			else if (entry.flag == Flag.LOWERBOUND)
-				alpha = Math.max(alpha, entry.score * side_sign);
-			else if (entry.flag == Flag.UPPERBOUND)
-				beta = Math.min(beta, entry.score * side_sign);
 
+		/**
+		 * updates alpha after a move has been searched, a cutoff aborts the
+		 * search of the remaining moves.
+		 * 
+		 * @param value
+		 *            the value of the move
+		 */
+		synchronized void update(int value) {
+			if (value > alpha)
+				alpha = value;
 			if (alpha >= beta)
-				return entry.tinyCopy();
+				aborted = true;
 		}
 
-		// ---------------------------------------------------------------------------------------
-		// base of complete tree search
-		if (depth == 0) {
-			// position is a leaf node
-			return board_analyzer.evalBoard(position, alpha, beta);
+		void abort() {
+			aborted = true;
 		}
 
-		// ---------------------------------------------------------------------------------------
-		// generate moves
-		List<IMove> moves = position.getPossibleMoves(true);
-
-		// ---------------------------------------------------------------------------------------
-		// Sort the moves:
-		ArrayList<IMove> ordered_moves = new ArrayList<IMove>(40);
-		ArrayList<IMove> remaining_moves = new ArrayList<IMove>(40);
-		BasicMoveComparator move_comparator = new BasicMoveComparator(position);
+		/**
+		 * @return true, if this or any parent split point is aborted.
+		 */
+		boolean isAborted() {
+			for (SplitPoint s = this; s != null; s = s.parent)
+				if (s.aborted)
+					return true;
+			return false;
+		}
+	}
 
-		// Get Killer Moves:
-		List<IMove> killer_moves = KillerMoves.getKillerMoves(total_depth
-				- depth);
+	/**
+	 * Searches a single move of a split point on a copy of the position. The
+	 * search uses the state of the executing worker thread.
+	 */
+	private class SplitTask extends RecursiveTask<AnalysisResult> {
 
-		// if possible use the moves from Position cache as the moves with
-		// highest priority
-		int number_legal_movs_TT =0;
-		if (entry != null) {
-			ordered_moves.addAll(entry.best_moves);
-			number_legal_movs_TT = ordered_moves.size();
+		private static final long serialVersionUID = 1L;
 
-			for (IMove k_move : killer_moves)
-				if (moves.contains(k_move)
-						&& !ordered_moves.contains(k_move))
-					ordered_moves.add(k_move);
+		private final IPosition position;
 
-		} else {
-			// Killer_moves have highest priority
-			for (IMove k_move : killer_moves)
-				if (moves.contains(k_move))
-					ordered_moves.add(k_move);
+		/**
+		 * the packed move
+		 */
+		private final int move;
+		private final int total_depth;
+		private final int depth;
+
+		/**
+		 * the distance of the node from the root
+		 */
+		private final int ply;
+
+		/**
+		 * the number of the move in the move order of the node
+		 */
+		private final int move_number;
+
+		/**
+		 * the expected type of the node
+		 */
+		private final NodeType node_type;
+
+		/**
+		 * true, if the move is skipped, unless it is a capture, a promotion or
+		 * gives check
+		 */
+		private final boolean futile;
+		private final SplitPoint split;
+
+		SplitTask(IPosition position, int move, int total_depth, int depth,
+				int ply, int move_number, NodeType node_type, boolean futile,
+				SplitPoint split) {
+			this.position = position;
+			this.move = move;
+			this.total_depth = total_depth;
+			this.depth = depth;
+			this.ply = ply;
+			this.move_number = move_number;
+			this.node_type = node_type;
+			this.futile = futile;
+			this.split = split;
 		}
-		// add the remaining moves and sort them using a basic heuristic
-		for (IMove move : moves)
-			if (!ordered_moves.contains(move))
-				remaining_moves.add(move);
-
-		Collections.sort(remaining_moves,
-				Collections.reverseOrder(move_comparator));
-		ordered_moves.addAll(remaining_moves);
-		// ---------------------------------------------------------------------------------------
-
-		if (entry != null && entry.plys_to_eval0 < depth)
-			entry.best_moves.clear();
-
-		// create new AnalysisResult and parent
-		AnalysisResult new_entry = null, parent = null;
-		if (entry == null)
-			new_entry = new AnalysisResult(0, null, false, 0, 0, null);
-
-		int best_value = NEG_INF; // this starts always at negative!
-
-		int i = 0;
-		int illegal_move_counter =0;
-		// alpha beta search
-		for (IMove move : ordered_moves) {
-
-			if(i>=number_legal_movs_TT && position.isCheckAfterMove(move)){
-				illegal_move_counter++;
-				continue;
-			}
-			
-			// output currently searched move to UCI
-			if (depth == total_depth && total_depth >= 6)
-				UCIReporter.sendInfoCurrMove(move, i + 1);
-
-			position.doMove(move);
-			AnalysisResult result = negaMax(position, total_depth, depth - 1,
-					-beta, -alpha);
-			position.undoMove(move);
-
-			int negaval = result.score * side_sign;
-
-			// better variation found
-			if (negaval > best_value || parent == null) {
-
-				best_value = negaval;
-
-				// update cache entry
-				if (entry != null && entry.plys_to_eval0 < depth)
-					entry.best_moves.add(move);
-				if (entry == null)
-					new_entry.best_moves.add(move);
-
-				// update AnalysisResult
-				byte old_seldepth = (parent == null ? 0
-						: parent.plys_to_seldepth);
-				parent = result; // change reference
-				parent.best_move = move;
-				parent.plys_to_eval0 = (byte) depth;
-				if (best_value != POS_INF) {
-					parent.plys_to_seldepth = (byte) Math.max(old_seldepth,
-							parent.plys_to_seldepth);
-				}
 
-				// output to UCI
-				if (depth == total_depth) {
-					position.updateAnalysisResult(parent);
-					game_state.getPosition().updateAnalysisResult(parent);
-					UCIReporter.sendInfoPV(game_state.getPosition(), runTime());
+		/**
+		 * @return the result of the move, null if the move is futile or the
+		 *         search has been aborted.
+		 */
+		@Override
+		protected AnalysisResult compute() {
+			if (split.isAborted())
+				return null;
+
+			PositionEvaluator evaluator = ((SearchThread) Thread
+					.currentThread()).evaluator;
+			int side_sign = Side.getSideSign(position.getActiveColor());
+			boolean in_check = position.isCheckPosition();
+			// an aborted search does not free its buffers
+			int frame = evaluator.next_frame;
+			try {
+				position.doMove(move);
+				if (futile && isQuiet(move) && !position.isCheckPosition())
+					return null;
+				// Principal Variation Search: null window, late quiet moves
+				// with reduced depth
+				int alpha = split.alpha;
+				int reduction = getReduction(position, depth, move_number,
+						move, in_check, node_type);
+				AnalysisResult result = evaluator.negaMax(position,
+						total_depth, depth - 1 - reduction, ply + 1,
+						-alpha - 1, -alpha, split, move, NodeType.CUT);
+				int value = result.score * side_sign;
+				if (reduction > 0 && value > alpha) {
+					result = evaluator.negaMax(position, total_depth,
+							depth - 1, ply + 1, -alpha - 1, -alpha, split,
+							move, NodeType.CUT);
+					value = result.score * side_sign;
 				}
+				if (value > alpha && value < split.beta)
+					result = evaluator.negaMax(position, total_depth,
+							depth - 1, ply + 1, -split.beta, -alpha, split,
+							move, NodeType.PV);
+				split.update(result.score * side_sign);
+				return result;
+			} catch (InterruptedException e) {
+				if (split.isAborted())
+					return null;
+				// the search is stopped
+				throw new CancellationException();
+			} finally {
+				evaluator.next_frame = frame;
 			}
+		}
+	}
 
-			// alpha beta cutoff
-			alpha = Math.max(alpha, negaval);
-			if (alpha >= beta) {
-				// set also KillerMove:
-				if (!killer_moves.contains(move))
-					KillerMoves.addKillerMove(total_depth - depth, move,
-							killer_moves);
-				break;
+	/**
+	 * A worker thread of the YBWC search, which has its own killer moves,
+	 * board analyzer and counters. The thread takes a free set of the tables
+	 * of the brain, which is returned, when the thread terminates. Only if
+	 * all are taken, e.g. by the threads of a stopped search, which have not
+	 * terminated yet, new tables are allocated.
+	 */
+	private class SearchThread extends ForkJoinWorkerThread {
+
+		private final PositionEvaluator evaluator;
+
+		/**
+		 * the flags of the taken tables and the index of the tables of this
+		 * thread, -1 if none was free.
+		 */
+		private final boolean[] tables_taken;
+		private final int tables;
+
+		SearchThread(ForkJoinPool pool) {
+			super(pool);
+			synchronized (MitziBrain.this) {
+				tables_taken = worker_tables_taken;
+				tables = takeWorkerTables(tables_taken);
+			}
+			KillerMoves k_m = tables < 0 ? new KillerMoves()
+					: killer_moves[tables];
+			HistoryTable h = tables < 0 ? new HistoryTable()
+					: history_tables[tables];
+			PawnHashTable p = tables < 0 ? new PawnHashTable()
+					: pawn_tables[tables];
+			synchronized (evaluators) {
+				evaluator = new PositionEvaluator(copyRootPosition(), 0,
+						evaluators.size(), k_m, h, p);
+				evaluators.add(evaluator);
 			}
+		}
 
-			i++;
+		@Override
+		protected void onTermination(Throwable exception) {
+			synchronized (MitziBrain.this) {
+				if (tables >= 0)
+					tables_taken[tables] = false;
+			}
+			super.onTermination(exception);
 		}
-		// check for mate and stalemate
-		if (illegal_move_counter == ordered_moves.size()) {
-			eval_counter++;
-			if (position.isCheckPosition()) {
-				return new AnalysisResult(NEG_INF * side_sign, false, false, 0,
-						0, Flag.EXACT);
-			} else {
-				return new AnalysisResult(0, true, false, 0, 0, Flag.EXACT);
+	}
+
+	/**
+	 * takes a free set of tables for a YBWC worker thread.
+	 * 
+	 * @param tables_taken
+	 *            the flags of the taken tables
+	 * @return the index of the tables, -1 if all are taken
+	 */
+	private static int takeWorkerTables(boolean[] tables_taken) {
+		for (int i = 1; i < tables_taken.length; i++) {
+			if (!tables_taken[i]) {
+				tables_taken[i] = true;
+				return i;
 			}
 		}
+		return -1;
+	}
 
-		// ---------------------------------------------------------------------------------------
-		// Transposition Table Store;
-		if (best_value <= alpha_old)
-			parent.flag = Flag.UPPERBOUND;
-		else if (best_value >= beta)
-			parent.flag = Flag.LOWERBOUND;
-		else
-			parent.flag = Flag.EXACT;
+	/**
+	 * the current time.
+	 */
+	private long start_mtime = System.currentTimeMillis();
+
+	private Timer timer;
+
+	public MitziBrain() {
+		allocateTables();
+	}
+
+	@Override
+	public synchronized void set(GameState game_state) {
+		this.game_state = game_state;
+		stop_requested = false;
+	}
 
-		if (entry != null && entry.plys_to_eval0 < depth) {
-			entry.tinySet(parent);
-			Collections.reverse(entry.best_moves);
+	/**
+	 * Sets the number of search threads, which is used by the next search.
+	 * The killer moves, history tables and pawn hash tables of the threads
+	 * are allocated here and kept between the searches.
+	 * 
+	 * @param threads
+	 *            the number of threads, between 1 and MAX_THREADS
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1 || threads > MAX_THREADS)
+			throw new IllegalArgumentException("invalid number of threads: "
+					+ threads);
+		if (threads == this.threads)
+			return;
+		this.threads = threads;
+		allocateTables();
+	}
+
+	/**
+	 * allocates the killer moves, history tables and pawn hash tables for
+	 * threads + 1 search threads, see killer_moves.
+	 */
+	private synchronized void allocateTables() {
+		killer_moves = new KillerMoves[threads + 1];
+		history_tables = new HistoryTable[threads + 1];
+		pawn_tables = new PawnHashTable[threads + 1];
+		worker_tables_taken = new boolean[threads + 1];
+		for (int i = 0; i <= threads; i++) {
+			killer_moves[i] = new KillerMoves();
+			history_tables[i] = new HistoryTable();
+			pawn_tables[i] = new PawnHashTable();
 		}
+	}
+
+	/**
+	 * Sets the algorithm for the parallel search, which is used by the next
+	 * search with more than one thread.
+	 * 
+	 * @param smp_mode
+	 *            the algorithm
+	 */
+	public void setSMPMode(SMPMode smp_mode) {
+		this.smp_mode = smp_mode;
+	}
+
+	/**
+	 * Sets the board representation, which is used by the next search.
+	 * 
+	 * @param use_bitboards
+	 *            true for <code>BitboardPosition</code>, false for
+	 *            <code>Position</code>
+	 */
+	public void setBitboards(boolean use_bitboards) {
+		this.use_bitboards = use_bitboards;
+	}
+
+	/**
+	 * Enables or disables the information about the search, which is sent to
+	 * UCI. The best move is returned by search() in both cases.
+	 * 
+	 * @param uci_output
+	 *            true, if the information is sent
+	 */
+	public void setUCIOutput(boolean uci_output) {
+		this.uci_output = uci_output;
+	}
+
+	/**
+	 * Enables or disables the verification of null move cutoffs in endgames.
+	 * 
+	 * @param null_move_verification
+	 *            true, if a null move cutoff is verified by a reduced search,
+	 *            if the side to move has few pieces.
+	 */
+	public void setNullMoveVerification(boolean null_move_verification) {
+		this.null_move_verification = null_move_verification;
+	}
+
+	/**
+	 * Sets the constant part of the late move reductions.
+	 * 
+	 * @param lmr_base
+	 *            the constant part in hundredths of a ply, between 0 and
+	 *            MAX_LMR_PARAMETER
+	 */
+	public void setLmrBase(int lmr_base) {
+		if (lmr_base < 0 || lmr_base > MAX_LMR_PARAMETER)
+			throw new IllegalArgumentException("invalid LMR base: "
+					+ lmr_base);
+		this.lmr_base = lmr_base;
+		reductions = computeReductions(lmr_base, lmr_divisor);
+	}
+
+	/**
+	 * Sets the divisor of log(depth) * log(move number) in the late move
+	 * reductions. A larger divisor reduces less.
+	 * 
+	 * @param lmr_divisor
+	 *            the divisor in hundredths, between 1 and MAX_LMR_PARAMETER
+	 */
+	public void setLmrDivisor(int lmr_divisor) {
+		if (lmr_divisor < 1 || lmr_divisor > MAX_LMR_PARAMETER)
+			throw new IllegalArgumentException("invalid LMR divisor: "
+					+ lmr_divisor);
+		this.lmr_divisor = lmr_divisor;
+		reductions = computeReductions(lmr_base, lmr_divisor);
+	}
+
+	/**
+	 * Sets the margin of the futility pruning: at a node with remaining depth
+	 * d, quiet moves are skipped, if the static evaluation plus d times the
+	 * margin does not exceed alpha.
+	 * 
+	 * @param futility_margin
+	 *            the margin per ply in centipawns, between 0 and MAX_MARGIN,
+	 *            0 disables the pruning.
+	 */
+	public void setFutilityMargin(int futility_margin) {
+		this.futility_margin = checkMargin(futility_margin);
+	}
+
+	/**
+	 * Sets the margin of the reverse futility pruning: a node with remaining
+	 * depth d fails high, if the static evaluation minus d times the margin
+	 * is at least beta.
+	 * 
+	 * @param reverse_futility_margin
+	 *            the margin per ply in centipawns, between 0 and MAX_MARGIN,
+	 *            0 disables the pruning.
+	 */
+	public void setReverseFutilityMargin(int reverse_futility_margin) {
+		this.reverse_futility_margin = checkMargin(reverse_futility_margin);
+	}
+
+	/**
+	 * Sets the margin of razoring: a node with remaining depth d is replaced
+	 * by the quiescence search, if the static evaluation plus d times the
+	 * margin is below alpha and the quiescence search confirms it.
+	 * 
+	 * @param razor_margin
+	 *            the margin per ply in centipawns, between 0 and MAX_MARGIN,
+	 *            0 disables razoring.
+	 */
+	public void setRazorMargin(int razor_margin) {
+		this.razor_margin = checkMargin(razor_margin);
+	}
+
+	private static int checkMargin(int margin) {
+		if (margin < 0 || margin > MAX_MARGIN)
+			throw new IllegalArgumentException("invalid margin: " + margin);
+		return margin;
+	}
+
+	/**
+	 * @return a copy of the actual position for a search thread or perft, in
+	 *         the selected board representation
+	 */
+	IPosition copyRootPosition() {
+		IPosition position = game_state.getPosition();
+		if (use_bitboards)
+			return new BitboardPosition(position);
+		return position.returnCopy();
+	}
+
+	/**
+	 * @return the number of evaluated boards of all threads in the current
+	 *         search
+	 */
+	public long getNodes() {
+		long nodes = 0;
+		for (PositionEvaluator evaluator : evaluators)
+			nodes += evaluator.getNodes();
+		return nodes;
+	}
+
+	/**
+	 * @return the time, which passes since start_mtime
+	 */
+	private long runTime() {
+		return System.currentTimeMillis() - start_mtime;
+	}
+
+	/**
+	 * sends a string to UCI, unless the UCI output is disabled.
+	 */
+	private void sendInfoString(String string) {
+		if (uci_output)
+			UCIReporter.sendInfoString(string);
+	}
+
+	/**
+	 * sends the PV of the current game state to UCI, if it has changed.
+	 */
+	private synchronized void sendInfoPV() {
+		if (!uci_output)
+			return;
+		last_pv = UCIReporter.sendInfoPV(game_state.getPosition(), runTime(),
+				last_pv);
+	}
+
+	/**
+	 * sends the number of evaluated boards of each thread, if more than one
+	 * thread is used.
+	 */
+	private void sendNodesPerThread() {
+		if (threads == 1 || !uci_output)
+			return;
+		StringBuilder info = new StringBuilder(smp_mode + " nodes per thread:");
+		for (PositionEvaluator evaluator : evaluators)
+			info.append(" ").append(evaluator.thread_id).append(":")
+					.append(evaluator.getNodes());
+		sendInfoString(info.toString());
+	}
 
-		if (entry == null) {
-			new_entry.tinySet(parent);
-			Collections.reverse(new_entry.best_moves);
-			ResultCache.setResult(position, new_entry);
+	/**
+	 * @return the number of lookups in the EvalCache of all threads in the
+	 *         current search
+	 */
+	public long getEvalCacheProbes() {
+		long probes = 0;
+		for (PositionEvaluator evaluator : evaluators)
+			probes += evaluator.board_analyzer.eval_cache_probes;
+		return probes;
+	}
+
+	/**
+	 * @return the number of found positions in the EvalCache of all threads
+	 *         in the current search
+	 */
+	public long getEvalCacheHits() {
+		long hits = 0;
+		for (PositionEvaluator evaluator : evaluators)
+			hits += evaluator.board_analyzer.eval_cache_hits;
+		return hits;
+	}
+
+	/**
+	 * sends the hit rates of the EvalCache and of the pawn hash tables of all
+	 * threads.
+	 */
+	private void sendHitRates() {
+		if (!uci_output)
+			return;
+		UCIReporter.sendInfoHitRate("eval cache", getEvalCacheHits(),
+				getEvalCacheProbes());
+
+		long probes = 0, hits = 0;
+		for (PositionEvaluator evaluator : evaluators) {
+			PawnHashTable table = evaluator.board_analyzer.getPawnHashTable();
+			probes += table.getProbes();
+			hits += table.getHits();
 		}
+		UCIReporter.sendInfoHitRate("pawn hash", hits, probes);
+	}
+
+	/**
+	 * Sends updates about evaluation status to UCI GUI, namely the number of
+	 * searched board per second, the size of the Transposition Table in
+	 * permill of the maximal size and the hit rates of the evaluation caches.
+	 * 
+	 */
+	class UCIUpdater extends TimerTask {
+		private long old_mtime;
+		private long old_eval_counter;
+
+		@Override
+		public void run() {
+			long mtime = System.currentTimeMillis();
 
-		return parent;
+			long eval_counter = getNodes();
+			long eval_span = eval_counter - old_eval_counter;
 
+			if (old_mtime != 0) {
+				long time_span = mtime - old_mtime;
+				UCIReporter.sendInfoNum(InfoType.NPS, eval_span * 1000
+						/ time_span);
+
+				UCIReporter.sendInfoNum(InfoType.HASHFULL,
+						ResultCache.getHashfull());
+				sendHitRates();
+			}
+
+			old_mtime = mtime;
+			old_eval_counter = eval_counter;
+
+		}
 	}
 
 	@Override
@@ -416,13 +1498,21 @@ public class MitziBrain implements IBrain {
 
 		// set up threading
 		timer = new Timer();
-		exe = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-		
-		// make a copy of the actual position
-		IPosition position = game_state.getPosition().returnCopy();
+		split_search = smp_mode == SMPMode.YBWC && threads > 1;
+		evaluators = new CopyOnWriteArrayList<PositionEvaluator>();
+		if (split_search)
+			exe = new ForkJoinPool(threads,
+					new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+						@Override
+						public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+							return new SearchThread(pool);
+						}
+					}, null, false);
+		else
+			exe = Executors.newFixedThreadPool(threads);
+
+		int tasks = split_search ? 1 : threads;
 
-		board_analyzer.setCastling(position);
-		
 		int max_depth;
 
 		// set parameters for searchtime and searchdepth
@@ -446,17 +1536,34 @@ public class MitziBrain implements IBrain {
 			max_depth = searchDepth;
 		}
 
-		timer.scheduleAtFixedRate(new UCIUpdater(), 1000, 5000);
+		if (uci_output)
+			timer.scheduleAtFixedRate(new UCIUpdater(), 1000, 5000);
 		start_mtime = System.currentTimeMillis();
 
 		// reset the result
 		result = null;
-
-		// create a new task
-		PositionEvaluator evaluator = new PositionEvaluator(position, max_depth);
-
-		// execute the task
-		exe.execute(evaluator);
+		last_pv = "";
+		ResultCache.newSearch();
+		for (PawnHashTable p : pawn_tables)
+			p.resetStatistics();
+
+		// create a new task for each thread, working on a copy of the actual
+		// position. YBWC has only a single task, which splits the tree.
+		PositionEvaluator[] root_tasks = new PositionEvaluator[tasks];
+		for (int i = 0; i < tasks; i++)
+			root_tasks[i] = new PositionEvaluator(copyRootPosition(),
+					max_depth, i, killer_moves[i], history_tables[i],
+					pawn_tables[i]);
+
+		// execute the tasks, unless the search has been stopped already
+		synchronized (this) {
+			if (!stop_requested) {
+				for (PositionEvaluator evaluator : root_tasks) {
+					evaluators.add(evaluator);
+					exe.execute(evaluator);
+				}
+			}
+		}
 
 		return wait_until();
 	}
@@ -473,9 +1580,9 @@ public class MitziBrain implements IBrain {
 		// wait for termination of execution
 		try {
 			if (exe.awaitTermination(maxEvalTime, THREAD_TIMEOUT_UNIT)) {
-				UCIReporter.sendInfoString("task completed");
+				sendInfoString("task completed");
 			} else {
-				UCIReporter.sendInfoString("forcing task shutdown");
+				sendInfoString("forcing task shutdown");
 				exe.shutdownNow();
 				exe.awaitTermination(THREAD_TIMEOUT, TimeUnit.SECONDS);
 			}
@@ -484,10 +1591,15 @@ public class MitziBrain implements IBrain {
 			e.printStackTrace();
 		}
 
-		// shut down timers and update killer moves
+		// shut down timers and update killer moves and history
 		timer.cancel();
-		UCIReporter.sendInfoPV(game_state.getPosition(), runTime());
-		KillerMoves.updateKillerMove();
+		sendInfoPV();
+		sendNodesPerThread();
+		sendHitRates();
+		for (KillerMoves k_m : killer_moves)
+			k_m.updateKillerMove();
+		for (HistoryTable h : history_tables)
+			h.age();
 
 		// if no best_move has been found yet, choose any
 		if (result == null) {
@@ -503,13 +1615,14 @@ public class MitziBrain implements IBrain {
 
 	@Override
 	public IMove stop() {
-		// shut down immediately
-		exe.shutdownNow();
-
-		// shut down timers and update killer moves
-		timer.cancel();
-		UCIReporter.sendInfoPV(game_state.getPosition(), runTime());
-		KillerMoves.updateKillerMove();
+		// shut down immediately, the timers, the killer moves and the history
+		// are updated once by wait_until(), when the threads have terminated.
+		// If the search has not started its tasks yet, it does not start them.
+		synchronized (this) {
+			stop_requested = true;
+			if (exe != null)
+				exe.shutdownNow();
+		}
 
 		// return the best move of the last completely searched tree
 		if (result == null)
@@ -0,0 +1,201 @@
+package mitzi;
+
+/**
+ * A move can be packed into a single <code>int</code>, such that the move
+ * generation and the search do not need to allocate <code>Move</code> objects.
+ * The bits are used as follows:
+ *
+ * <pre>
+ * bits  0-6:  source square
+ * bits  7-13: destination square
+ * bits 14-16: promotion (0 if none, ordinal + 1 else)
+ * bit     17: the move captures a piece
+ * bit     18: the move is a castling
+ * bit     19: the move is an en passant capture
+ * </pre>
+ *
+ * The flags are set by the move generator of the position. A packed move is
+ * never 0, such that 0 can be used as <code>NO_MOVE</code>. <code>IMove</code>
+ * is still used for UCI and the GUI.
+ */
+public final class MoveHelper {
+
+	/**
+	 * the value for no move
+	 */
+	public static final int NO_MOVE = 0;
+
+	/**
+	 * the flag of a capture (including en passant)
+	 */
+	public static final int CAPTURE = 1 << 17;
+
+	/**
+	 * the flag of a castling
+	 */
+	public static final int CASTLING = 1 << 18;
+
+	/**
+	 * the flag of an en passant capture
+	 */
+	public static final int EN_PASSANT = 1 << 19;
+
+	/**
+	 * the bits of the source square, the destination square and the promotion,
+	 * i.e. the move without flags.
+	 */
+	public static final int MOVE_MASK = 0x1FFFF;
+
+	/**
+	 * the maximal number of moves in a position, the size of a move buffer.
+	 */
+	public static final int MAX_MOVES = 256;
+
+	/**
+	 * cache of <code>Piece.values()</code>, which creates a new array every
+	 * time.
+	 */
+	private static final Piece[] PIECES = Piece.values();
+
+	private MoveHelper() {
+	};
+
+	/**
+	 * packs a move.
+	 *
+	 * @param src
+	 *            the source square
+	 * @param dest
+	 *            the destination square
+	 * @param promotion
+	 *            the piece, resulting from promotion, null if no promotion
+	 * @param flags
+	 *            the flags CAPTURE, CASTLING and EN_PASSANT
+	 * @return the packed move
+	 */
+	public static int create(int src, int dest, Piece promotion, int flags) {
+		int promo = promotion == null ? 0 : promotion.ordinal() + 1;
+		return src | dest << 7 | promo << 14 | flags;
+	}
+
+	/**
+	 * packs a move without promotion.
+	 *
+	 * @param src
+	 *            the source square
+	 * @param dest
+	 *            the destination square
+	 * @param flags
+	 *            the flags CAPTURE, CASTLING and EN_PASSANT
+	 * @return the packed move
+	 */
+	public static int create(int src, int dest, int flags) {
+		return src | dest << 7 | flags;
+	}
+
+	/**
+	 * packs an IMove, the flags are not set.
+	 *
+	 * @param move
+	 *            the move, may be null
+	 * @return the packed move, NO_MOVE if move is null
+	 */
+	public static int fromMove(IMove move) {
+		if (move == null)
+			return NO_MOVE;
+		return create(move.getFromSquare(), move.getToSquare(),
+				move.getPromotion(), 0);
+	}
+
+	/**
+	 * unpacks a move into a new <code>Move</code>.
+	 *
+	 * @param move
+	 *            the packed move
+	 * @return the move, null if move is NO_MOVE
+	 */
+	public static IMove toMove(int move) {
+		if (move == NO_MOVE)
+			return null;
+		return new Move(getFromSquare(move), getToSquare(move),
+				getPromotion(move));
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return the source square
+	 */
+	public static int getFromSquare(int move) {
+		return move & 0x7F;
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return the destination square
+	 */
+	public static int getToSquare(int move) {
+		return (move >>> 7) & 0x7F;
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return the piece, resulting from promotion, null if no promotion
+	 */
+	public static Piece getPromotion(int move) {
+		int promo = (move >>> 14) & 0x7;
+		return promo == 0 ? null : PIECES[promo - 1];
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return true, if the move captures a piece (including en passant)
+	 */
+	public static boolean isCapture(int move) {
+		return (move & CAPTURE) != 0;
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return true, if the move is a castling
+	 */
+	public static boolean isCastling(int move) {
+		return (move & CASTLING) != 0;
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return true, if the move is an en passant capture
+	 */
+	public static boolean isEnPassant(int move) {
+		return (move & EN_PASSANT) != 0;
+	}
+
+	/**
+	 * compares two packed moves, ignoring the flags.
+	 *
+	 * @return true, if both moves have the same squares and promotion
+	 */
+	public static boolean isSameMove(int move1, int move2) {
+		return (move1 & MOVE_MASK) == (move2 & MOVE_MASK);
+	}
+
+	/**
+	 * @param move
+	 *            the packed move
+	 * @return the string representation of the move, like
+	 *         <code>Move.toString()</code>
+	 */
+	public static String toString(int move) {
+		Piece promotion = getPromotion(move);
+		return SquareHelper.toString(getFromSquare(move))
+				+ SquareHelper.toString(getToSquare(move))
+				+ (promotion == null ? "" : PieceHelper.toString(Side.WHITE,
+						promotion));
+	}
+}
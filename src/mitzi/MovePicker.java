@@ -0,0 +1,345 @@
+package mitzi;
+
+/**
+ * Returns the pseudolegal moves of a position one by one in the order, in
+ * which they should be searched. The moves are produced in stages, such that
+ * the work of the later stages is not done, if an early move causes a cutoff:
+ *
+ * <ol>
+ * <li>the move from the transposition table, which is only checked for
+ * pseudolegality</li>
+ * <li>the captures and queen promotions, which do not lose material by the
+ * static exchange evaluation, the most valuable victim with the least valuable
+ * attacker first (MVV-LVA)</li>
+ * <li>the killer moves, if they are quiet moves of the position</li>
+ * <li>the countermove of the previous move, if it is a quiet move of the
+ * position</li>
+ * <li>the remaining quiet moves, sorted by the history heuristic and the
+ * heuristic of <code>BasicMoveComparator</code></li>
+ * <li>the losing captures</li>
+ * </ol>
+ *
+ * Within a stage the best remaining move is selected on demand (selection
+ * sort), so the moves after a cutoff are never sorted. The moves are not
+ * checked for legality, this is done by the caller with isLegal(). In check
+ * only the legal evasions are generated.
+ *
+ * A picker is reused for the nodes of a search thread with reset(), such
+ * that its buffers are allocated only once. It must not be shared between
+ * threads and must not be reset, while the moves of its node are searched.
+ */
+class MovePicker {
+
+	private static final int STAGE_HASH_MOVE = 0;
+	private static final int STAGE_GENERATE = 1;
+	private static final int STAGE_CAPTURES = 2;
+	private static final int STAGE_KILLERS = 3;
+	private static final int STAGE_COUNTER_MOVE = 4;
+	private static final int STAGE_SCORE_QUIETS = 5;
+	private static final int STAGE_QUIETS = 6;
+	private static final int STAGE_BAD_CAPTURES = 7;
+	private static final int STAGE_DONE = 8;
+
+	/**
+	 * the values of the pieces for MVV-LVA, in the order of
+	 * <code>Piece</code>
+	 */
+	private static final int[] piece_values = { 1, 5, 3, 3, 9, 10 };
+
+	/**
+	 * the bonus of a promotion to a queen, such that it is searched with the
+	 * good captures.
+	 */
+	private static final int PROMOTION_BONUS = 80;
+
+	/**
+	 * the weight of the history compared to the static heuristic of the
+	 * quiet moves
+	 */
+	private static final int HISTORY_WEIGHT = 32;
+
+	private IPosition position;
+
+	/**
+	 * the move from the transposition table, NO_MOVE if none.
+	 */
+	private int hash_move;
+
+	/**
+	 * the killer moves of the ply, searched after the captures
+	 */
+	private int[] killers;
+
+	/**
+	 * the countermove of the previous move, NO_MOVE if none.
+	 */
+	private int counter_move;
+
+	/**
+	 * the history of the quiet moves
+	 */
+	private HistoryTable history;
+
+	private int stage;
+
+	/**
+	 * true, if the active side is in check
+	 */
+	private boolean in_check;
+
+	/**
+	 * the generated moves, the captures are at the beginning, followed by
+	 * the quiet moves.
+	 */
+	private final int[] moves = new int[MoveHelper.MAX_MOVES];
+
+	/**
+	 * the scores of the moves, for the selection of the next move
+	 */
+	private final int[] scores = new int[MoveHelper.MAX_MOVES];
+
+	/**
+	 * the index of the next move in <code>moves</code>
+	 */
+	private int current;
+
+	/**
+	 * the end of the captures and the end of all moves in <code>moves</code>
+	 */
+	private int end_captures, end_moves;
+
+	/**
+	 * the index of the next killer move
+	 */
+	private int killer_index;
+
+	/**
+	 * the captures, which lose material, in the order of MVV-LVA
+	 */
+	private final int[] bad_captures = new int[MoveHelper.MAX_MOVES];
+
+	/**
+	 * the number of bad captures and the index of the next one
+	 */
+	private int bad_captures_count, bad_captures_index;
+
+	/**
+	 * the buffer of the static exchange evaluation
+	 */
+	private final int[] see_gains = new int[StaticExchange.MAX_CAPTURES];
+
+	/**
+	 * prepares the picker for the moves of a node.
+	 * 
+	 * @param position
+	 *            the position, which must not be changed, while the picker is
+	 *            used, except by moves, which are undone before next() is
+	 *            called.
+	 * @param hash_move
+	 *            the move from the transposition table, NO_MOVE if none.
+	 * @param killers
+	 *            the killer moves of the ply
+	 * @param counter_move
+	 *            the countermove of the previous move, NO_MOVE if none.
+	 * @param history
+	 *            the history of the quiet moves
+	 * @param in_check
+	 *            true, if the active side is in check
+	 */
+	void reset(IPosition position, int hash_move, int[] killers,
+			int counter_move, HistoryTable history, boolean in_check) {
+		this.position = position;
+		this.in_check = in_check;
+		this.hash_move = hash_move;
+		this.killers = killers;
+		this.counter_move = counter_move;
+		this.history = history;
+		stage = STAGE_HASH_MOVE;
+		current = 0;
+		end_captures = 0;
+		end_moves = 0;
+		killer_index = 0;
+		bad_captures_count = 0;
+		bad_captures_index = 0;
+	}
+
+	/**
+	 * @return the next pseudolegal move, NO_MOVE if all moves have been
+	 *         returned. The stages fall through to the next stage, when they
+	 *         are exhausted.
+	 */
+	@SuppressWarnings("fallthrough")
+	int next() {
+		switch (stage) {
+		case STAGE_HASH_MOVE:
+			stage = STAGE_GENERATE;
+			if (hash_move != MoveHelper.NO_MOVE) {
+				int move = position.getPseudolegalMove(hash_move);
+				if (move != MoveHelper.NO_MOVE)
+					return move;
+			}
+			// fall through
+		case STAGE_GENERATE:
+			generate();
+			stage = STAGE_CAPTURES;
+			// fall through
+		case STAGE_CAPTURES:
+			while (current < end_captures) {
+				int move = selectBest(end_captures);
+				if (MoveHelper.isSameMove(move, hash_move))
+					continue;
+				if (isLosingCapture(move))
+					bad_captures[bad_captures_count++] = move;
+				else
+					return move;
+			}
+			stage = STAGE_KILLERS;
+			// fall through
+		case STAGE_KILLERS:
+			while (killer_index < killers.length) {
+				int killer = killers[killer_index++];
+				int move = takeQuiet(killer);
+				if (move != MoveHelper.NO_MOVE)
+					return move;
+			}
+			stage = STAGE_COUNTER_MOVE;
+			// fall through
+		case STAGE_COUNTER_MOVE: {
+			stage = STAGE_SCORE_QUIETS;
+			int move = takeQuiet(counter_move);
+			if (move != MoveHelper.NO_MOVE)
+				return move;
+		}
+			// fall through
+		case STAGE_SCORE_QUIETS:
+			scoreQuiets();
+			stage = STAGE_QUIETS;
+			// fall through
+		case STAGE_QUIETS:
+			while (current < end_moves) {
+				int move = selectBest(end_moves);
+				if (!MoveHelper.isSameMove(move, hash_move))
+					return move;
+			}
+			stage = STAGE_BAD_CAPTURES;
+			// fall through
+		case STAGE_BAD_CAPTURES:
+			if (bad_captures_index < bad_captures_count)
+				return bad_captures[bad_captures_index++];
+			stage = STAGE_DONE;
+			// fall through
+		default:
+			return MoveHelper.NO_MOVE;
+		}
+	}
+
+	/**
+	 * generates all moves, only the legal evasions in check, and moves the
+	 * captures and queen promotions to the front, scored by MVV-LVA.
+	 */
+	private void generate() {
+		end_moves = in_check ? position.generateLegalMoves(moves) : position
+				.generateMoves(moves);
+		end_captures = 0;
+		for (int i = 0; i < end_moves; i++) {
+			int move = moves[i];
+			Piece promotion = MoveHelper.getPromotion(move);
+			if (!MoveHelper.isCapture(move) && promotion != Piece.QUEEN)
+				continue;
+
+			int score = 0;
+			if (MoveHelper.isCapture(move)) {
+				Piece victim = MoveHelper.isEnPassant(move) ? Piece.PAWN
+						: position.getPieceFromBoard(MoveHelper
+								.getToSquare(move));
+				Piece attacker = position.getPieceFromBoard(MoveHelper
+						.getFromSquare(move));
+				score = 10 * piece_values[victim.ordinal()]
+						- piece_values[attacker.ordinal()];
+			}
+			if (promotion == Piece.QUEEN)
+				score += PROMOTION_BONUS;
+
+			moves[i] = moves[end_captures];
+			moves[end_captures] = move;
+			scores[end_captures] = score;
+			end_captures++;
+		}
+	}
+
+	/**
+	 * @return true, if the static exchange evaluation of the capture is
+	 *         negative. A capture of a piece, which is at least as valuable as
+	 *         the capturing piece, cannot lose material.
+	 */
+	private boolean isLosingCapture(int move) {
+		Piece victim = position.getPieceFromBoard(MoveHelper
+				.getToSquare(move));
+		if (MoveHelper.getPromotion(move) != null || victim == null)
+			return StaticExchange.see(position, move, see_gains) < 0;
+		Piece attacker = position.getPieceFromBoard(MoveHelper
+				.getFromSquare(move));
+		if (StaticExchange.getValue(victim) >= StaticExchange
+				.getValue(attacker))
+			return false;
+		return StaticExchange.see(position, move, see_gains) < 0;
+	}
+
+	/**
+	 * scores the remaining quiet moves. The history dominates, the static
+	 * heuristic decides between moves with similar history.
+	 */
+	private void scoreQuiets() {
+		Side side = position.getActiveColor();
+		for (int i = current; i < end_moves; i++)
+			scores[i] = HISTORY_WEIGHT
+					* history.getHistory(side, moves[i])
+					+ BasicMoveComparator.getValue(position,
+							MoveHelper.getFromSquare(moves[i]),
+							MoveHelper.getToSquare(moves[i]));
+	}
+
+	/**
+	 * removes a move from the quiet moves, such that it is not returned
+	 * again. Moves, which are the move from the transposition table or not a
+	 * quiet move of the position, are ignored.
+	 * 
+	 * @return the move as generated, NO_MOVE if it is not taken.
+	 */
+	private int takeQuiet(int move) {
+		if (move == MoveHelper.NO_MOVE
+				|| MoveHelper.isSameMove(move, hash_move))
+			return MoveHelper.NO_MOVE;
+		for (int i = end_captures; i < end_moves; i++) {
+			if (MoveHelper.isSameMove(moves[i], move)) {
+				int quiet = moves[i];
+				end_moves--;
+				moves[i] = moves[end_moves];
+				return quiet;
+			}
+		}
+		return MoveHelper.NO_MOVE;
+	}
+
+	/**
+	 * swaps the best move between <code>current</code> and <code>end</code>
+	 * to <code>current</code>.
+	 *
+	 * @return the best move, <code>current</code> is advanced.
+	 */
+	private int selectBest(int end) {
+		int best = current;
+		for (int i = current + 1; i < end; i++)
+			if (scores[i] > scores[best])
+				best = i;
+
+		int move = moves[best];
+		int score = scores[best];
+		moves[best] = moves[current];
+		scores[best] = scores[current];
+		moves[current] = move;
+		scores[current] = score;
+		current++;
+		return move;
+	}
+}
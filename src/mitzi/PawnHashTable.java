@@ -0,0 +1,144 @@
+package mitzi;
+
+/**
+ * this class caches the evaluation of the pawn structure. Since the pawns
+ * move rarely, the same pawn structure is evaluated in many positions of a
+ * search. Every search thread should use its own instance, so no
+ * synchronization is needed.
+ *
+ * The table has a fixed number of entries and is indexed by the lower bits of
+ * the pawn key of the position, see <code>IPosition.getPawnKey()</code>. An
+ * entry is always replaced by a newer one. Each entry stores the whole pawn
+ * key, the score of the terms, which only depend on the pawns, and the passed
+ * pawns, such that the terms depending on the king and the rooks can be added
+ * without analyzing the pawn structure again.
+ *
+ * An empty entry has the key 0, which is also the key of a position without
+ * pawns. Its score and passed pawns are 0 as well, so it is a valid entry for
+ * such a position.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Pawn+Hash+Table">Pawn
+ *      Hash Table</a>
+ */
+public class PawnHashTable {
+
+	/**
+	 * the default number of entries, must be a power of two.
+	 */
+	public static final int DEFAULT_ENTRIES = 1 << 14;
+
+	/**
+	 * the pawn keys of the entries
+	 */
+	private final long[] keys;
+
+	/**
+	 * the scores of the pawn structure ( in favor of white)
+	 */
+	private final int[] scores;
+
+	/**
+	 * the passed pawns of both sides, indexed like Bitboards
+	 */
+	private final long[] passed_pawns;
+
+	private final int mask;
+
+	/**
+	 * the number of lookups and found entries
+	 */
+	private long probes, hits;
+
+	PawnHashTable() {
+		this(DEFAULT_ENTRIES);
+	}
+
+	/**
+	 * @param entries
+	 *            the number of entries, a power of two
+	 */
+	PawnHashTable(int entries) {
+		if (entries <= 0 || Integer.bitCount(entries) != 1)
+			throw new IllegalArgumentException(
+					"the number of entries must be a power of two: " + entries);
+		keys = new long[entries];
+		scores = new int[entries];
+		passed_pawns = new long[entries];
+		mask = entries - 1;
+	}
+
+	/**
+	 * looks up the entry of a pawn structure.
+	 *
+	 * @param pawn_key
+	 *            the pawn key of the position
+	 * @return the index of the entry, -1 if the pawn structure is not stored
+	 */
+	int probe(long pawn_key) {
+		probes++;
+		int index = (int) pawn_key & mask;
+		if (keys[index] != pawn_key)
+			return -1;
+		hits++;
+		return index;
+	}
+
+	/**
+	 * @param index
+	 *            the index returned by probe()
+	 * @return the score of the pawn structure ( in favor of white)
+	 */
+	int getScore(int index) {
+		return scores[index];
+	}
+
+	/**
+	 * @param index
+	 *            the index returned by probe()
+	 * @return the passed pawns of both sides, indexed like Bitboards
+	 */
+	long getPassedPawns(int index) {
+		return passed_pawns[index];
+	}
+
+	/**
+	 * stores the evaluation of a pawn structure.
+	 *
+	 * @param pawn_key
+	 *            the pawn key of the position
+	 * @param score
+	 *            the score of the pawn structure ( in favor of white)
+	 * @param passed
+	 *            the passed pawns of both sides, indexed like Bitboards
+	 * @return the index of the entry
+	 */
+	int store(long pawn_key, int score, long passed) {
+		int index = (int) pawn_key & mask;
+		keys[index] = pawn_key;
+		scores[index] = score;
+		passed_pawns[index] = passed;
+		return index;
+	}
+
+	/**
+	 * @return the number of lookups since the last reset
+	 */
+	public long getProbes() {
+		return probes;
+	}
+
+	/**
+	 * @return the number of found entries since the last reset
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * resets the statistics, the entries are kept.
+	 */
+	void resetStatistics() {
+		probes = 0;
+		hits = 0;
+	}
+}
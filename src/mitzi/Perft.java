@@ -0,0 +1,300 @@
+package mitzi;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the leaf nodes of the tree of legal moves up to a given depth
+ * (perft). This tests the legal move generation, doMove and undoMove against
+ * known node counts and measures their speed. At the last ply the legal moves
+ * are only counted, not made (bulk counting). The moves at the root can be
+ * searched in parallel.
+ *
+ * Usage:
+ *
+ * <pre>
+ * java mitzi.Perft [-threads n] [-bitboards] [depth [fen]]
+ * </pre>
+ *
+ * Without FEN the standard positions of <code>SUITE_FENS</code> are computed up to
+ * the given depth (default 4) and compared to the known node counts. With a
+ * FEN the node counts of each root move are printed (divide).
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Perft+Results">Perft
+ *      Results</a>
+ */
+public final class Perft {
+
+	/**
+	 * the standard test positions and their node counts, starting at depth 1.
+	 */
+	public static final String[] SUITE_FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" };
+
+	/**
+	 * the known node counts of <code>SUITE_FENS</code>, the first entry is
+	 * depth 1.
+	 */
+	public static final long[][] SUITE_NODES = {
+			{ 20, 400, 8902, 197281, 4865609, 119060324 },
+			{ 48, 2039, 97862, 4085603, 193690690 },
+			{ 14, 191, 2812, 43238, 674624, 11030083 },
+			{ 6, 264, 9467, 422333, 15833292 },
+			{ 44, 1486, 62379, 2103487, 89941194 },
+			{ 46, 2079, 89890, 3894594, 164075551 } };
+
+	private Perft() {
+	}
+
+	/**
+	 * counts the leaf nodes of the legal move tree.
+	 *
+	 * @param position
+	 *            the position, which is restored afterwards
+	 * @param depth
+	 *            the depth, at least 1
+	 * @return the number of leaf nodes
+	 */
+	public static long perft(IPosition position, int depth) {
+		return perft(position, depth, new int[depth][MoveHelper.MAX_MOVES]);
+	}
+
+	/**
+	 * counts the leaf nodes of the legal move tree, the moves of the root are
+	 * distributed over several threads.
+	 *
+	 * @param position
+	 *            the position, which is not changed
+	 * @param depth
+	 *            the depth, at least 1
+	 * @param threads
+	 *            the number of threads
+	 * @return the number of leaf nodes
+	 */
+	public static long perft(IPosition position, int depth, int threads) {
+		long nodes = 0;
+		for (long n : divide(position, depth, threads).values())
+			nodes += n;
+		return nodes;
+	}
+
+	/**
+	 * see <code>perft(IPosition, int)</code>
+	 *
+	 * @param buffers
+	 *            the move buffers, one for each remaining ply
+	 */
+	private static long perft(IPosition position, int depth, int[][] buffers) {
+		int[] moves = buffers[depth - 1];
+		int n = position.generateLegalMoves(moves);
+
+		// bulk counting
+		if (depth == 1)
+			return n;
+
+		long nodes = 0;
+		for (int i = 0; i < n; i++) {
+			position.doMove(moves[i]);
+			nodes += perft(position, depth - 1, buffers);
+			position.undoMove(moves[i]);
+		}
+		return nodes;
+	}
+
+	/**
+	 * counts the leaf nodes after each legal move of the root.
+	 *
+	 * @param position
+	 *            the position, which is not changed
+	 * @param depth
+	 *            the depth, at least 1
+	 * @param threads
+	 *            the number of threads, the root moves are searched in
+	 *            parallel on copies of the position.
+	 * @return the node count of each root move, in the order of the move
+	 *         generation
+	 * @throws IllegalArgumentException
+	 *             if depth is less than 1
+	 */
+	public static Map<IMove, Long> divide(IPosition position, final int depth,
+			int threads) {
+		if (depth < 1)
+			throw new IllegalArgumentException("invalid depth: " + depth);
+
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateLegalMoves(moves);
+
+		List<Integer> legal_moves = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; i++)
+			legal_moves.add(moves[i]);
+
+		Map<IMove, Long> result = new LinkedHashMap<IMove, Long>();
+		if (depth == 1) {
+			for (int move : legal_moves)
+				result.put(MoveHelper.toMove(move), 1L);
+			return result;
+		}
+
+		ExecutorService exe = Executors.newFixedThreadPool(Math.max(1,
+				threads));
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (final int move : legal_moves) {
+				final IPosition copy = position.returnCopy();
+				futures.add(exe.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						copy.doMove(move);
+						return perft(copy, depth - 1);
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++)
+				result.put(MoveHelper.toMove(legal_moves.get(i)), futures
+						.get(i).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			exe.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * prints the node count of each root move, the total number of nodes and
+	 * the nodes per second.
+	 *
+	 * @param position
+	 *            the position, which is not changed
+	 * @param depth
+	 *            the depth, at least 1
+	 * @param threads
+	 *            the number of threads
+	 * @param out
+	 *            the stream for the output
+	 * @return the total number of nodes
+	 */
+	public static long printDivide(IPosition position, int depth, int threads,
+			PrintStream out) {
+		long time = System.nanoTime();
+		Map<IMove, Long> result = divide(position, depth, threads);
+		time = System.nanoTime() - time;
+
+		long nodes = 0;
+		for (Map.Entry<IMove, Long> entry : result.entrySet()) {
+			out.println(entry.getKey() + ": " + entry.getValue());
+			nodes += entry.getValue();
+		}
+		out.println();
+		out.println("Nodes searched: " + nodes);
+		out.println("Time: " + time / 1000000 + " ms, nps: "
+				+ nodesPerSecond(nodes, time));
+		return nodes;
+	}
+
+	/**
+	 * computes the standard positions up to a given depth and prints the
+	 * results.
+	 *
+	 * @param max_depth
+	 *            the maximal depth, positions with less known node counts are
+	 *            computed up to their last known depth
+	 * @param threads
+	 *            the number of threads
+	 * @param bitboards
+	 *            true for <code>BitboardPosition</code>, false for
+	 *            <code>Position</code>
+	 * @param out
+	 *            the stream for the output
+	 * @return true, if all node counts are correct
+	 */
+	public static boolean runSuite(int max_depth, int threads,
+			boolean bitboards, PrintStream out) {
+		boolean ok = true;
+		long total_nodes = 0, total_time = 0;
+		for (int i = 0; i < SUITE_FENS.length; i++) {
+			IPosition position = createPosition(SUITE_FENS[i], bitboards);
+			int depth = Math.min(max_depth, SUITE_NODES[i].length);
+
+			long time = System.nanoTime();
+			long nodes = perft(position, depth, threads);
+			time = System.nanoTime() - time;
+			total_nodes += nodes;
+			total_time += time;
+
+			boolean correct = nodes == SUITE_NODES[i][depth - 1];
+			ok &= correct;
+			out.println((correct ? "OK   " : "FAIL ") + SUITE_FENS[i]
+					+ " depth " + depth + ": " + nodes + " nodes (expected "
+					+ SUITE_NODES[i][depth - 1] + "), " + time / 1000000
+					+ " ms, nps: " + nodesPerSecond(nodes, time));
+		}
+		out.println("Total: " + total_nodes + " nodes, " + total_time
+				/ 1000000 + " ms, nps: "
+				+ nodesPerSecond(total_nodes, total_time));
+		return ok;
+	}
+
+	/**
+	 * @return the nodes per second
+	 */
+	private static long nodesPerSecond(long nodes, long nano_time) {
+		return nano_time == 0 ? 0 : nodes * 1000000000L / nano_time;
+	}
+
+	/**
+	 * creates a position from a FEN.
+	 *
+	 * @param bitboards
+	 *            true for <code>BitboardPosition</code>, false for
+	 *            <code>Position</code>
+	 */
+	private static IPosition createPosition(String fen, boolean bitboards) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(fen);
+		if (bitboards)
+			return new BitboardPosition(game_state.getPosition());
+		return game_state.getPosition().returnCopy();
+	}
+
+	public static void main(String[] args) {
+		int threads = 1;
+		boolean bitboards = false;
+		int depth = 4;
+		StringBuilder fen = new StringBuilder();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-bitboards"))
+				bitboards = true;
+			else if (fen.length() == 0 && args[i].matches("\\d+"))
+				depth = Integer.parseInt(args[i]);
+			else
+				fen.append(args[i]).append(" ");
+		}
+
+		if (fen.length() == 0) {
+			if (!runSuite(depth, threads, bitboards, System.out))
+				System.exit(1);
+		} else {
+			printDivide(createPosition(fen.toString().trim(), bitboards),
+					depth, threads, System.out);
+		}
+	}
+}
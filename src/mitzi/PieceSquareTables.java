@@ -0,0 +1,246 @@
+package mitzi;
+
+/**
+ * Contains the material values and the piece-square tables of the evaluation.
+ * The positions sum up the value of each piece on its square incrementally in
+ * every change of the board, so the material and the activity of the pieces
+ * are evaluated in constant time by <code>BoardAnalyzer</code>.
+ *
+ * There are two tables for each piece, one for the middlegame and one for the
+ * endgame. The score of a position is interpolated between both values by the
+ * phase of the game, which is computed from the remaining pieces (tapered
+ * evaluation). The squares are indexed like <code>Bitboards</code> and all
+ * values are in favor of white.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Tapered+Eval">Tapered
+ *      Eval</a>
+ */
+public final class PieceSquareTables {
+
+	/**
+	 * the material value of a piece.
+	 */
+	static private int[] piece_values = { 100, 500, 325, 325, 975, 000 };
+
+	/**
+	 * the contribution of a piece to the phase of the game, in the order of
+	 * <code>Piece</code>
+	 */
+	static private int[] phase_values = { 0, 2, 1, 1, 4, 0 };
+
+	/**
+	 * the phase of the initial position, smaller values are closer to the
+	 * endgame
+	 */
+	public static final int MAX_PHASE = 24;
+
+	// The following arrays contains the value of a piece on a specific square,
+	// always in favor of white. Since the arrays are symmetric w.r.t. the
+	// columns, BLACK uses 63-i entry with opposite sign.
+	/**
+	 * value of squares for bishop and knight, in favor of white
+	 */
+	static private int[] piece_activity_b_k = { -16, -16, -8, -8, -8, -8, -16,
+			-16, -16, -16, -4, -4, -4, -4, -16, -16, -8, 2, 6, 6, 6, 6, 2, -8,
+			-8, 2, 6, 6, 6, 6, 2, -8, -8, 2, 4, 4, 4, 4, 2, -8, -8, 2, 2, 2, 2,
+			2, 2, -8, -8, -8, 0, 0, 0, 0, -8, -8, -16, -8, -8, -8, -8, -8, -8,
+			-16 };
+	/**
+	 * value of squares for rook, in favor of white
+	 */
+	static private int[] piece_activity_r = { 0, 0, 4, 6, 6, 4, 0, 0, 0, 0, 4,
+			6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0, 0, 0,
+			0, 4, 6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0, 0, 0, 0, 4, 6, 6, 4, 0,
+			0, 0, 0, 4, 6, 6, 4, 0, 0, };
+
+	/**
+	 * value of squares for queen, in favor of white
+	 */
+	static private int[] piece_activity_q = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 4,
+			5, 5, 4, 0, 0, 0, 2, 4, 10, 10, 4, 2, 0, 0, 2, 10, 12, 12, 10, 2,
+			0, -10, 2, 10, 12, 12, 10, 2, -10, -10, -10, 4, 10, 10, 4, -10,
+			-10, -10, 2, 8, 8, 8, 8, 2, -10, -10, -8, 0, 0, 0, 0, -8, -10, };
+
+	/**
+	 * value of squares, which are weak/strong squares for bishop and knight,
+	 * also used by <code>BoardAnalyzer</code> for the outposts
+	 */
+	static final int[] weak_positions = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 8, 12, 12, 8, 0, 0, 0, 2, 12, 16, 16, 12, 2, 0,
+			0, 2, 12, 20, 20, 12, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, };
+
+	/**
+	 * value of squares for white pawns. (not symmetric)
+	 */
+	static private int[] pawn_positions_w = { 0, 0, 0, 0, 0, 0, 0, 0, 28, 28,
+			35, 42, 45, 35, 28, 28, -9, -3, 7, 12, 15, 7, -3, -9, -10, -10, 6,
+			9, 10, 6, -11, -10, -11, -11, 4, 5, 6, 2, -11, -11, -11, -11, 0, 0,
+			1, 0, -11, -11, -6, -6, 4, 5, 5, 4, -6, -6, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * value of squares for black pawns. (not symmetric)
+	 */
+	static private int[] pawn_positions_b = { 0, 0, 0, 0, 0, 0, 0, 0, -6, -6,
+			4, 5, 5, 4, -6, -6, -11, -11, 0, 0, 1, 0, -11, -11, -11, -11, 4, 5,
+			6, 2, -11, -11, -10, -10, 6, 9, 10, 6, -11, -10, -9, -3, 7, 12, 15,
+			7, -3, -9, 28, 28, 35, 42, 45, 35, 28, 28, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * value of squares for white king in the middlegame. (not symmetric)
+	 */
+	static private int[] king_positions_w = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -10, -15,
+			-10, 0, 0, 5, 10, 18, -8, -3, -8, 23, 10 };
+
+	/**
+	 * value of squares for black king in the middlegame. (not symmetric)
+	 */
+	static private int[] king_positions_b = { 5, 10, 18, -8, -3, -8, 23, 10, 0,
+			0, 0, -10, -15, -10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * value of squares for king in the endgame, where it should be
+	 * centralized, in favor of white
+	 */
+	static private int[] king_endgame = { -20, -10, -10, -10, -10, -10, -10,
+			-20, -10, 0, 0, 0, 0, 0, 0, -10, -10, 0, 10, 10, 10, 10, 0, -10,
+			-10, 0, 10, 20, 20, 10, 0, -10, -10, 0, 10, 20, 20, 10, 0, -10,
+			-10, 0, 10, 10, 10, 10, 0, -10, -10, 0, 0, 0, 0, 0, 0, -10, -20,
+			-10, -10, -10, -10, -10, -10, -20 };
+
+	/**
+	 * the value of each piece on each square including its material, indexed
+	 * by (side.ordinal() * 6 + piece.ordinal()) * 64 + index
+	 */
+	private static final int[] midgame = new int[12 * 64];
+	private static final int[] endgame = new int[12 * 64];
+
+	static {
+		for (int i = 0; i < 64; i++) {
+			for (Piece piece : Piece.values()) {
+				int value = piece_values[piece.ordinal()];
+				add(getEntry(Side.WHITE, piece, i), value);
+				add(getEntry(Side.BLACK, piece, i), -value);
+			}
+
+			add(getEntry(Side.WHITE, Piece.PAWN, i), pawn_positions_w[i]);
+			add(getEntry(Side.BLACK, Piece.PAWN, i), -pawn_positions_b[i]);
+			add(getEntry(Side.WHITE, Piece.ROOK, i), piece_activity_r[i]);
+			add(getEntry(Side.BLACK, Piece.ROOK, i), -piece_activity_r[63 - i]);
+			add(getEntry(Side.WHITE, Piece.BISHOP, i), piece_activity_b_k[i]
+					+ weak_positions[i]);
+			add(getEntry(Side.BLACK, Piece.BISHOP, i),
+					-piece_activity_b_k[63 - i] - weak_positions[63 - i]);
+			add(getEntry(Side.WHITE, Piece.KNIGHT, i), piece_activity_b_k[i]);
+			add(getEntry(Side.BLACK, Piece.KNIGHT, i),
+					-piece_activity_b_k[63 - i]);
+			add(getEntry(Side.WHITE, Piece.QUEEN, i), piece_activity_q[i]);
+			add(getEntry(Side.BLACK, Piece.QUEEN, i), -piece_activity_q[63 - i]);
+
+			// the king is safe behind the pawns in the middlegame and should
+			// be centralized in the endgame
+			midgame[getEntry(Side.WHITE, Piece.KING, i)] += king_positions_w[i];
+			midgame[getEntry(Side.BLACK, Piece.KING, i)] -= king_positions_b[i];
+			endgame[getEntry(Side.WHITE, Piece.KING, i)] += king_endgame[i];
+			endgame[getEntry(Side.BLACK, Piece.KING, i)] -= king_endgame[63 - i];
+		}
+	}
+
+	private PieceSquareTables() {
+	}
+
+	/**
+	 * adds a value to the middlegame and the endgame table.
+	 */
+	private static void add(int entry, int value) {
+		midgame[entry] += value;
+		endgame[entry] += value;
+	}
+
+	/**
+	 * @return the entry of a piece on a square in the tables
+	 */
+	private static int getEntry(Side side, Piece piece, int index) {
+		return (side.ordinal() * 6 + piece.ordinal()) * 64 + index;
+	}
+
+	/**
+	 * @param side
+	 *            the side of the piece
+	 * @param piece
+	 *            the piece
+	 * @param index
+	 *            the index of the square, see <code>Bitboards</code>
+	 * @return the middlegame value of the piece on the square including its
+	 *         material ( in favor of white)
+	 */
+	public static int getMidgameValue(Side side, Piece piece, int index) {
+		return midgame[getEntry(side, piece, index)];
+	}
+
+	/**
+	 * @param side
+	 *            the side of the piece
+	 * @param piece
+	 *            the piece
+	 * @param index
+	 *            the index of the square, see <code>Bitboards</code>
+	 * @return the endgame value of the piece on the square including its
+	 *         material ( in favor of white)
+	 */
+	public static int getEndgameValue(Side side, Piece piece, int index) {
+		return endgame[getEntry(side, piece, index)];
+	}
+
+	/**
+	 * @return the contribution of a piece to the phase of the game
+	 */
+	public static int getPhaseValue(Piece piece) {
+		return phase_values[piece.ordinal()];
+	}
+
+	/**
+	 * interpolates between the middlegame and the endgame score.
+	 *
+	 * @param midgame_score
+	 *            the sum of the middlegame values of all pieces
+	 * @param endgame_score
+	 *            the sum of the endgame values of all pieces
+	 * @param phase
+	 *            the sum of the phase values of all pieces, it is cut at
+	 *            MAX_PHASE after promotions
+	 * @return the tapered score ( in favor of white)
+	 */
+	public static int taper(int midgame_score, int endgame_score, int phase) {
+		phase = Math.min(phase, MAX_PHASE);
+		return (midgame_score * phase + endgame_score * (MAX_PHASE - phase))
+				/ MAX_PHASE;
+	}
+
+	/**
+	 * computes the tapered score of a position from scratch. It is used to
+	 * check the incrementally updated score.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the material and piece-square score ( in favor of white)
+	 */
+	public static int evaluate(IPosition position) {
+		int midgame_score = 0, endgame_score = 0, phase = 0;
+		for (int i = 0; i < 64; i++) {
+			int square = Bitboards.toSquare(i);
+			Side side = position.getSideFromBoard(square);
+			if (side == null)
+				continue;
+			Piece piece = position.getPieceFromBoard(square);
+			midgame_score += getMidgameValue(side, piece, i);
+			endgame_score += getEndgameValue(side, piece, i);
+			phase += getPhaseValue(piece);
+		}
+		return taper(midgame_score, endgame_score, phase);
+	}
+}
@@ -10,8 +10,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import mitzi.IrreversibleMoveStack.MoveInfo;
-
 /**
  * The class implements the position of the figures on a chess board. The board
  * is represented as two 8*8 +1 arrays - one for the sides, one for the pieces.
@@ -25,6 +23,39 @@ import mitzi.IrreversibleMoveStack.MoveInfo;
  */
 public class Position implements IPosition {
 
+	/**
+	 * the offsets of the directions of a rook
+	 */
+	private static final int[] ROOK_OFFSETS = { 10, -10, 1, -1 };
+
+	/**
+	 * the offsets of the directions of a bishop
+	 */
+	private static final int[] BISHOP_OFFSETS = { 11, -9, -11, 9 };
+
+	/**
+	 * the offsets of all directions, used for the queen and the king
+	 */
+	private static final int[] QUEEN_OFFSETS = { 10, -10, 1, -1, 11, -9, -11,
+			9 };
+
+	/**
+	 * the offsets of the knight steps
+	 */
+	private static final int[] KNIGHT_OFFSETS = { 21, 12, -8, -19, -21, -12,
+			8, 19 };
+
+	/**
+	 * the possible promotions, the most valuable first
+	 */
+	/**
+	 * the initial number of plies of the legality cache, see isLegal()
+	 */
+	private static final int LEGALITY_CACHE_SIZE = 128;
+
+	private static final Piece[] PROMOTIONS = { Piece.QUEEN, Piece.KNIGHT,
+			Piece.ROOK, Piece.BISHOP };
+
 	/**
 	 * the initial position of the sides
 	 */
@@ -107,6 +138,30 @@ public class Position implements IPosition {
 	 */
 	public int half_move_clock;
 
+	/**
+	 * the Zobrist key of the position, which is updated incrementally by every
+	 * change of the board, see <code>Zobrist</code>.
+	 */
+	private long zobrist_key;
+
+	/**
+	 * the Zobrist key of the pawns only, which is updated incrementally like
+	 * <code>zobrist_key</code>. It is used as key for the PawnHashTable.
+	 */
+	private long pawn_key;
+
+	/**
+	 * the sums of the middlegame and endgame values and of the phase values of
+	 * all pieces, which are updated incrementally by every change of the
+	 * board, see <code>PieceSquareTables</code>.
+	 */
+	private int midgame_score, endgame_score, phase;
+
+	/**
+	 * the stack for the information, which cannot be reverted by undoMove.
+	 */
+	private IrreversibleMoveStack irr_move_stack = new IrreversibleMoveStack();
+
 	// The following class members are used to prevent multiple computations
 	/**
 	 * caching of the possible moves
@@ -181,6 +236,45 @@ public class Position implements IPosition {
 
 	private Boolean pseudolegal_moves;
 
+	/**
+	 * the buffer for the moves of a single piece, see getPseudolegalMove().
+	 */
+	private int[] piece_move_buffer = new int[32];
+
+	/**
+	 * the buffer for the moves of getPossibleMoves()
+	 */
+	private int[] move_buffer = new int[MoveHelper.MAX_MOVES];
+
+	/**
+	 * the destination squares, which resolve a check: the checking piece and
+	 * the squares between it and the king. All squares, if the king is not in
+	 * check. Indexed like Bitboards, computed by computeCheckersAndPins().
+	 */
+	private long evasion_mask;
+
+	/**
+	 * the pinned pieces of the active side, indexed like Bitboards
+	 */
+	private long pinned;
+
+	/**
+	 * the squares between the king and the pinning piece (including it) for
+	 * each pinned piece, indexed like Bitboards
+	 */
+	private long[] pin_masks = new long[64];
+
+	/**
+	 * the evasion masks and the pinned pieces of the positions on the path
+	 * from the initial position, indexed by the number of moves done and
+	 * like Bitboards, see isLegal(). The evasion mask is empty in double
+	 * check. An entry is valid, if <code>legality_computed</code> is set, it
+	 * is reset by resetCache().
+	 */
+	private long[] node_evasions = new long[LEGALITY_CACHE_SIZE];
+	private long[] node_pinned = new long[LEGALITY_CACHE_SIZE];
+	private boolean[] legality_computed = new boolean[LEGALITY_CACHE_SIZE];
+
 	// -----------------------------------------------------------------------------------------
 
 	/**
@@ -197,6 +291,9 @@ public class Position implements IPosition {
 		occupied_squares_by_color_and_type.clear();
 		occupied_squares_by_type.clear();
 		occupied_squares_by_color.clear();
+		int ply = irr_move_stack.size();
+		if (ply < legality_computed.length)
+			legality_computed[ply] = false;
 	}
 
 	/**
@@ -233,6 +330,11 @@ public class Position implements IPosition {
 				newBoard.num_occupied_squares_by_color_and_type, 0, 16);
 
 		System.arraycopy(king_pos, 0, newBoard.king_pos, 0, 2);
+		newBoard.zobrist_key = zobrist_key;
+		newBoard.pawn_key = pawn_key;
+		newBoard.midgame_score = midgame_score;
+		newBoard.endgame_score = endgame_score;
+		newBoard.phase = phase;
 		return newBoard;
 	}
 
@@ -257,7 +359,8 @@ public class Position implements IPosition {
 	}
 
 	/**
-	 * sets a piece on the board.
+	 * sets a piece on the board and updates the Zobrist keys and the
+	 * piece-square score.
 	 * 
 	 * @param square
 	 *            the square, were the piece should be set
@@ -268,8 +371,93 @@ public class Position implements IPosition {
 	 */
 	private void setOnBoard(int square, Side side, Piece piece) {
 		int i = squareToArrayIndex(square);
+		if (piece_board[i] != null) {
+			zobrist_key ^= Zobrist.getPieceKey(side_board[i], piece_board[i],
+					i);
+			if (piece_board[i] == Piece.PAWN)
+				pawn_key ^= Zobrist.getPieceKey(side_board[i], Piece.PAWN, i);
+			midgame_score -= PieceSquareTables.getMidgameValue(side_board[i],
+					piece_board[i], i);
+			endgame_score -= PieceSquareTables.getEndgameValue(side_board[i],
+					piece_board[i], i);
+			phase -= PieceSquareTables.getPhaseValue(piece_board[i]);
+		}
 		side_board[i] = side;
 		piece_board[i] = piece;
+		if (piece != null) {
+			zobrist_key ^= Zobrist.getPieceKey(side, piece, i);
+			if (piece == Piece.PAWN)
+				pawn_key ^= Zobrist.getPieceKey(side, Piece.PAWN, i);
+			midgame_score += PieceSquareTables.getMidgameValue(side, piece, i);
+			endgame_score += PieceSquareTables.getEndgameValue(side, piece, i);
+			phase += PieceSquareTables.getPhaseValue(piece);
+		}
+	}
+
+	/**
+	 * computes the Zobrist key of the position from scratch.
+	 * 
+	 * @return the Zobrist key
+	 */
+	private long computeZobristKey() {
+		long key = 0;
+		for (int i = 0; i < 64; i++)
+			if (piece_board[i] != null)
+				key ^= Zobrist.getPieceKey(side_board[i], piece_board[i], i);
+		key ^= Zobrist.getCastlingKey(castling);
+		key ^= Zobrist.getEnPassantKey(en_passant_target);
+		if (active_color == Side.BLACK)
+			key ^= Zobrist.BLACK_TO_MOVE;
+		return key;
+	}
+
+	/**
+	 * computes the Zobrist key of the pawns from scratch.
+	 * 
+	 * @return the pawn key
+	 */
+	private long computePawnKey() {
+		long key = 0;
+		for (int i = 0; i < 64; i++)
+			if (piece_board[i] == Piece.PAWN)
+				key ^= Zobrist.getPieceKey(side_board[i], Piece.PAWN, i);
+		return key;
+	}
+
+	/**
+	 * checks the incrementally updated Zobrist keys against a full
+	 * recomputation. Only called if assertions are enabled (java -ea).
+	 * 
+	 * @return true, if the keys coincide
+	 */
+	private boolean isZobristKeyValid() {
+		return zobrist_key == computeZobristKey()
+				&& pawn_key == computePawnKey();
+	}
+
+	/**
+	 * computes the sums of the piece-square values from scratch.
+	 */
+	private void computePieceSquareScore() {
+		midgame_score = endgame_score = phase = 0;
+		for (int i = 0; i < 64; i++)
+			if (piece_board[i] != null) {
+				midgame_score += PieceSquareTables.getMidgameValue(
+						side_board[i], piece_board[i], i);
+				endgame_score += PieceSquareTables.getEndgameValue(
+						side_board[i], piece_board[i], i);
+				phase += PieceSquareTables.getPhaseValue(piece_board[i]);
+			}
+	}
+
+	/**
+	 * checks the incrementally updated piece-square score against a full
+	 * recomputation. Only called if assertions are enabled (java -ea).
+	 * 
+	 * @return true, if the scores coincide
+	 */
+	private boolean isPieceSquareScoreValid() {
+		return getPieceSquareScore() == PieceSquareTables.evaluate(this);
 	}
 
 	/**
@@ -368,6 +556,9 @@ public class Position implements IPosition {
 
 		king_pos[Side.WHITE.ordinal()] = 51;
 		king_pos[Side.BLACK.ordinal()] = 58;
+		zobrist_key = computeZobristKey();
+		pawn_key = computePawnKey();
+		computePieceSquareScore();
 		resetCache();
 	}
 
@@ -499,11 +690,17 @@ public class Position implements IPosition {
 		if (!fen_parts[3].equals("-")) {
 			en_passant_target = SquareHelper.fromString(fen_parts[3]);
 		}
+
+		zobrist_key = computeZobristKey();
+		pawn_key = computePawnKey();
+		computePieceSquareScore();
 	}
 
 	@Override
 	public IPosition doMove_copy(IMove move) {
 		Position newBoard = this.returnCopy();
+		newBoard.zobrist_key ^= Zobrist.getCastlingKey(castling)
+				^ Zobrist.getEnPassantKey(en_passant_target);
 
 		int src = move.getFromSquare();
 		int dest = move.getToSquare();
@@ -611,6 +808,12 @@ public class Position implements IPosition {
 			}
 		}
 
+		newBoard.zobrist_key ^= Zobrist.getCastlingKey(newBoard.castling)
+				^ Zobrist.getEnPassantKey(newBoard.en_passant_target)
+				^ Zobrist.BLACK_TO_MOVE;
+		assert newBoard.isZobristKeyValid();
+		assert newBoard.isPieceSquareScoreValid();
+
 		return newBoard;
 	}
 
@@ -797,13 +1000,10 @@ public class Position implements IPosition {
 	public List<IMove> getPossibleMoves(boolean pseudolegal) {
 
 		if (possible_moves_is_null == true ) {
-				
-			// loop over all squares
-			for (int square : SquareHelper.all_squares) {
-				if (getSideFromBoard(square) == active_color)
-					possible_moves.addAll(getPossibleMovesFrom(square,
-							pseudolegal));
-			}
+			int n = pseudolegal ? generateMoves(move_buffer)
+					: generateLegalMoves(move_buffer);
+			for (int i = 0; i < n; i++)
+				possible_moves.add(MoveHelper.toMove(move_buffer[i]));
 			pseudolegal_moves = pseudolegal;
 			possible_moves_is_null = false;
 		} 
@@ -1035,7 +1235,7 @@ public class Position implements IPosition {
 							setOnBoard(square, active_color, Piece.KING);
 							setOnBoard(squ, null, null);
 							is_check = false;
-							king_pos[active_color.ordinal()] = squ;
+							king_pos[active_color.ordinal()] = square;
 							if (squ == new_square) {
 								// if everything is right, then add the move
 								move = new Move(square, squ);
@@ -1314,15 +1514,29 @@ public class Position implements IPosition {
 
 	@Override
 	public boolean isCheckAfterMove(IMove move) {
+		return isCheckAfterMove(move.getFromSquare(), move.getToSquare(),
+				move.getPromotion());
+	}
+
+	@Override
+	public boolean isCheckAfterMove(int move) {
+		return isCheckAfterMove(MoveHelper.getFromSquare(move),
+				MoveHelper.getToSquare(move), MoveHelper.getPromotion(move));
+	}
+
+	/**
+	 * see <code>isCheckAfterMove(IMove move)</code>
+	 */
+	private boolean isCheckAfterMove(int src, int dest, Piece promotion) {
 
 		boolean is_check = false;
 
-		tinyDoMove(move);
+		tinyDoMove(src, dest, promotion);
 		active_color = Side.getOppositeSide(active_color);
 		if (isCheckPosition())
 			is_check = true;
 		active_color = Side.getOppositeSide(active_color);
-		tinyUndoMove(move);
+		tinyUndoMove(src, dest, promotion);
 
 		return is_check;
 
@@ -1515,25 +1729,7 @@ public class Position implements IPosition {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-
-		for (Side element : side_board)
-			result = prime * result
-					+ (element == null ? 0 : element.ordinal() + 1);
-
-		for (Piece element : piece_board)
-			result = prime * result
-					+ (element == null ? 0 : element.ordinal() + 1);
-
-		for (int element : castling)
-			result = prime * result + element;
-
-		result = prime * result + active_color.ordinal();
-
-		result = prime * result + en_passant_target;
-
-		return result;
+		return (int) (zobrist_key ^ (zobrist_key >>> 32));
 	}
 
 	@Override
@@ -1559,39 +1755,474 @@ public class Position implements IPosition {
 	}
 
 	@Override
-	public List<IMove> generateCaptures() {
-		List<IMove> poss_moves = getPossibleMoves();
-		List<IMove> result = new ArrayList<IMove>(poss_moves.size());
+	public int generateMoves(int[] moves) {
+		int n = 0;
+		Side opp_color = getOpponentsColor();
 
-		for (IMove move : poss_moves)
-			if (isHit(move) || move.getPromotion() != null)
-				result.add(move);
-		return result;
+		for (int square = 11; square <= 88; square++) {
+			int index = squareToArrayIndex(square);
+			if (index == 64 || side_board[index] != active_color)
+				continue;
+			n = generateMovesFrom(moves, n, square, opp_color, true);
+		}
+
+		return generateCastlings(moves, n, opp_color);
+	}
+
+	@Override
+	public int generateCaptures(int[] moves) {
+		int n = 0;
+		Side opp_color = getOpponentsColor();
+
+		for (int square = 11; square <= 88; square++) {
+			int index = squareToArrayIndex(square);
+			if (index == 64 || side_board[index] != active_color)
+				continue;
+			n = generateMovesFrom(moves, n, square, opp_color, false);
+		}
+		return n;
+	}
+
+	@Override
+	public int generateLegalMoves(int[] moves) {
+		int king = king_pos[active_color.ordinal()];
+		Side opp_color = getOpponentsColor();
+		int checkers = computeCheckersAndPins(king, opp_color);
+
+		int n = generateMoves(moves);
+		int legal = 0;
+		for (int i = 0; i < n; i++) {
+			int move = moves[i];
+			int src = MoveHelper.getFromSquare(move);
+			int dest = MoveHelper.getToSquare(move);
+			if (src == king) {
+				// castlings are only generated, if they are legal
+				if (!MoveHelper.isCastling(move)
+						&& isAttackedWithoutKing(dest, opp_color, king))
+					continue;
+			} else if (checkers > 1) {
+				// only the king can escape a double check
+				continue;
+			} else if (MoveHelper.isEnPassant(move)) {
+				// both pawns leave the row, which may discover a check
+				if (isCheckAfterMove(move))
+					continue;
+			} else {
+				// the move must resolve a check and a pinned piece must stay
+				// on the line of the pin
+				long dest_bit = 1L << Bitboards.toIndex(dest);
+				int index = Bitboards.toIndex(src);
+				if ((evasion_mask & dest_bit) == 0)
+					continue;
+				if ((pinned & 1L << index) != 0
+						&& (pin_masks[index] & dest_bit) == 0)
+					continue;
+			}
+			moves[legal++] = move;
+		}
+		return legal;
+	}
+
+	@Override
+	public boolean isLegal(int move) {
+		int ply = getLegalityPly();
+		int king = king_pos[active_color.ordinal()];
+		Side opp_color = getOpponentsColor();
+		if (!legality_computed[ply]) {
+			// only the king can escape a double check
+			node_evasions[ply] = computeCheckersAndPins(king, opp_color) > 1 ? 0
+					: evasion_mask;
+			node_pinned[ply] = pinned;
+			legality_computed[ply] = true;
+		}
+
+		int src = MoveHelper.getFromSquare(move);
+		int dest = MoveHelper.getToSquare(move);
+		if (src == king)
+			// castlings are only generated, if they are legal
+			return MoveHelper.isCastling(move)
+					|| !isAttackedWithoutKing(dest, opp_color, king);
+		if (node_evasions[ply] == 0)
+			return false;
+		// both pawns of an en passant capture leave the row, a pinned piece
+		// may only move on the line of the pin
+		if (MoveHelper.isEnPassant(move)
+				|| (node_pinned[ply] & 1L << Bitboards.toIndex(src)) != 0)
+			return !isCheckAfterMove(move);
+		return (node_evasions[ply] & 1L << Bitboards.toIndex(dest)) != 0;
+	}
+
+	/**
+	 * @return the ply of the current position in the legality cache, the
+	 *         cache is grown, if necessary.
+	 */
+	private int getLegalityPly() {
+		int ply = irr_move_stack.size();
+		if (ply >= legality_computed.length) {
+			int size = Math.max(2 * legality_computed.length, ply + 1);
+			node_evasions = Arrays.copyOf(node_evasions, size);
+			node_pinned = Arrays.copyOf(node_pinned, size);
+			legality_computed = Arrays.copyOf(legality_computed, size);
+		}
+		return ply;
+	}
+
+	/**
+	 * computes the pieces, which give check to the king of the active side,
+	 * and the pinned pieces of the active side. The results are stored in
+	 * evasion_mask, pinned and pin_masks.
+	 * 
+	 * @param king
+	 *            the square of the king of the active side
+	 * @param opp_color
+	 *            the opponent's side
+	 * @return the number of checking pieces
+	 */
+	private int computeCheckersAndPins(int king, Side opp_color) {
+		int checkers = 0;
+		evasion_mask = 0;
+		pinned = 0;
+
+		// pawns attack in the opposite direction of their moves
+		int dir = opp_color == Side.WHITE ? -1 : 1;
+		for (int side_step = -10; side_step <= 10; side_step += 20) {
+			int from = king + dir + side_step;
+			if (SquareHelper.isValidSquare(from)
+					&& getSideFromBoard(from) == opp_color
+					&& getPieceFromBoard(from) == Piece.PAWN) {
+				checkers++;
+				evasion_mask |= 1L << Bitboards.toIndex(from);
+			}
+		}
+
+		for (int offset : KNIGHT_OFFSETS) {
+			int from = king + offset;
+			if (SquareHelper.isValidSquare(from)
+					&& getSideFromBoard(from) == opp_color
+					&& getPieceFromBoard(from) == Piece.KNIGHT) {
+				checkers++;
+				evasion_mask |= 1L << Bitboards.toIndex(from);
+			}
+		}
+
+		// walk from the king in each direction: an opponent's sliding piece
+		// behind no own piece gives check, behind one own piece it pins it
+		for (int i = 0; i < QUEEN_OFFSETS.length; i++) {
+			int offset = QUEEN_OFFSETS[i];
+			boolean straight = i < 4;
+			long ray = 0;
+			int own = -1;
+			for (int square = king + offset; SquareHelper.isValidSquare(square); square += offset) {
+				ray |= 1L << Bitboards.toIndex(square);
+				Side side = getSideFromBoard(square);
+				if (side == null)
+					continue;
+				if (side == active_color) {
+					if (own != -1)
+						break;
+					own = square;
+					continue;
+				}
+				Piece piece = getPieceFromBoard(square);
+				if (piece == Piece.QUEEN || (straight && piece == Piece.ROOK)
+						|| (!straight && piece == Piece.BISHOP)) {
+					if (own == -1) {
+						checkers++;
+						evasion_mask |= ray;
+					} else {
+						int index = Bitboards.toIndex(own);
+						pinned |= 1L << index;
+						pin_masks[index] = ray;
+					}
+				}
+				break;
+			}
+		}
+
+		if (checkers == 0)
+			evasion_mask = -1L;
+		return checkers;
+	}
+
+	/**
+	 * checks, if a square is attacked by a side, if the king is removed from
+	 * the board. Thus the squares behind the king on the line of a sliding
+	 * piece are attacked as well.
+	 * 
+	 * @param square
+	 *            the square
+	 * @param attacker
+	 *            the attacking side
+	 * @param king
+	 *            the square of the king
+	 * @return true, if a piece of the attacker attacks the square
+	 */
+	private boolean isAttackedWithoutKing(int square, Side attacker, int king) {
+		int index = squareToArrayIndex(king);
+		Side side = side_board[index];
+		side_board[index] = null;
+		piece_board[index] = null;
+		boolean attacked = isAttacked(square, attacker);
+		side_board[index] = side;
+		piece_board[index] = Piece.KING;
+		return attacked;
 	}
 
 	@Override
-	public long hashCode2() {
-		final int prime = 23;
-		long result = 1;
+	public int getPseudolegalMove(int move) {
+		int src = MoveHelper.getFromSquare(move);
+		if (getSideFromBoard(src) != active_color)
+			return MoveHelper.NO_MOVE;
+
+		Side opp_color = getOpponentsColor();
+		int n = generateMovesFrom(piece_move_buffer, 0, src, opp_color, true);
+		if (piece_board[squareToArrayIndex(src)] == Piece.KING)
+			n = generateCastlings(piece_move_buffer, n, opp_color);
+		for (int i = 0; i < n; i++)
+			if (MoveHelper.isSameMove(piece_move_buffer[i], move))
+				return piece_move_buffer[i];
+		return MoveHelper.NO_MOVE;
+	}
+
+	/**
+	 * adds the moves of the piece on a square to a move buffer, without
+	 * castlings.
+	 * 
+	 * @param quiets
+	 *            false, if only captures and promotions are added
+	 * @return the new number of moves in the buffer
+	 */
+	private int generateMovesFrom(int[] moves, int n, int square,
+			Side opp_color, boolean quiets) {
+		switch (getPieceFromBoard(square)) {
+		case PAWN:
+			return generatePawnMoves(moves, n, square, opp_color, quiets);
+		case KNIGHT:
+			return generateStepMoves(moves, n, square, KNIGHT_OFFSETS, quiets);
+		case BISHOP:
+			return generateSlidingMoves(moves, n, square, BISHOP_OFFSETS,
+					quiets);
+		case ROOK:
+			return generateSlidingMoves(moves, n, square, ROOK_OFFSETS, quiets);
+		case QUEEN:
+			return generateSlidingMoves(moves, n, square, QUEEN_OFFSETS, quiets);
+		default:
+			return generateStepMoves(moves, n, square, QUEEN_OFFSETS, quiets);
+		}
+	}
+
+	/**
+	 * adds the castlings to a move buffer, the king must not be in check or
+	 * pass an attacked square.
+	 * 
+	 * @return the new number of moves in the buffer
+	 */
+	private int generateCastlings(int[] moves, int n, Side opp_color) {
+		int off = active_color == Side.WHITE ? 0 : 2;
+		if (castling[off] != -1 || castling[off + 1] != -1) {
+			int king = king_pos[active_color.ordinal()];
+			if (!isAttacked(king, opp_color)) {
+				// queen side: the rook moves from column 1 to 4
+				if (castling[off] != -1
+						&& getSideFromBoard(king - 10) == null
+						&& getSideFromBoard(king - 20) == null
+						&& getSideFromBoard(king - 30) == null
+						&& !isAttacked(king - 10, opp_color)
+						&& !isAttacked(king - 20, opp_color))
+					moves[n++] = MoveHelper.create(king, king - 20,
+							MoveHelper.CASTLING);
+				// king side: the rook moves from column 8 to 6
+				if (castling[off + 1] != -1
+						&& getSideFromBoard(king + 10) == null
+						&& getSideFromBoard(king + 20) == null
+						&& !isAttacked(king + 10, opp_color)
+						&& !isAttacked(king + 20, opp_color))
+					moves[n++] = MoveHelper.create(king, king + 20,
+							MoveHelper.CASTLING);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * adds the moves of a pawn to a move buffer.
+	 * 
+	 * @param quiets
+	 *            false, if only captures and promotions are added
+	 * @return the new number of moves in the buffer
+	 */
+	private int generatePawnMoves(int[] moves, int n, int square,
+			Side opp_color, boolean quiets) {
+		int dir = active_color == Side.WHITE ? 1 : -1;
+		int row = SquareHelper.getRow(square);
+		boolean promotes = row == (active_color == Side.WHITE ? 7 : 2);
+
+		// steps
+		int dest = square + dir;
+		if ((quiets || promotes) && getSideFromBoard(dest) == null) {
+			n = addPawnMove(moves, n, square, dest, promotes, 0);
+			if (quiets && row == (active_color == Side.WHITE ? 2 : 7)
+					&& getSideFromBoard(dest + dir) == null)
+				moves[n++] = MoveHelper.create(square, dest + dir, 0);
+		}
+
+		// captures
+		for (int side_step = -10; side_step <= 10; side_step += 20) {
+			dest = square + dir + side_step;
+			if (!SquareHelper.isValidSquare(dest))
+				continue;
+			if (getSideFromBoard(dest) == opp_color)
+				n = addPawnMove(moves, n, square, dest, promotes,
+						MoveHelper.CAPTURE);
+			else if (dest == en_passant_target)
+				moves[n++] = MoveHelper.create(square, dest,
+						MoveHelper.CAPTURE | MoveHelper.EN_PASSANT);
+		}
+		return n;
+	}
 
-		for (Side element : side_board)
-			result = prime * result
-					+ (element == null ? 0 : element.ordinal() + 1);
+	/**
+	 * adds a pawn move to a move buffer, with all promotions if the pawn
+	 * promotes.
+	 * 
+	 * @return the new number of moves in the buffer
+	 */
+	private int addPawnMove(int[] moves, int n, int src, int dest,
+			boolean promotes, int flags) {
+		if (promotes)
+			for (Piece promotion : PROMOTIONS)
+				moves[n++] = MoveHelper.create(src, dest, promotion, flags);
+		else
+			moves[n++] = MoveHelper.create(src, dest, flags);
+		return n;
+	}
 
-		for (Piece element : piece_board)
-			result = prime * result
-					+ (element == null ? 0 : element.ordinal() + 1);
+	/**
+	 * adds the moves of a knight or king to a move buffer.
+	 * 
+	 * @param quiets
+	 *            false, if only captures are added
+	 * @return the new number of moves in the buffer
+	 */
+	private int generateStepMoves(int[] moves, int n, int square,
+			int[] offsets, boolean quiets) {
+		for (int offset : offsets) {
+			int dest = square + offset;
+			if (!SquareHelper.isValidSquare(dest))
+				continue;
+			Side side = getSideFromBoard(dest);
+			if (side == null) {
+				if (quiets)
+						moves[n++] = MoveHelper.create(square, dest, 0);
+			} else if (side != active_color)
+				moves[n++] = MoveHelper.create(square, dest,
+						MoveHelper.CAPTURE);
+		}
+		return n;
+	}
 
-		for (int element : castling)
-			result = prime * result + element;
+	/**
+	 * adds the moves of a bishop, rook or queen to a move buffer.
+	 * 
+	 * @param quiets
+	 *            false, if only captures are added
+	 * @return the new number of moves in the buffer
+	 */
+	private int generateSlidingMoves(int[] moves, int n, int square,
+			int[] offsets, boolean quiets) {
+		for (int offset : offsets) {
+			for (int dest = square + offset; SquareHelper.isValidSquare(dest); dest += offset) {
+				Side side = getSideFromBoard(dest);
+				if (side == null) {
+					if (quiets)
+						moves[n++] = MoveHelper.create(square, dest, 0);
+				} else {
+					if (side != active_color)
+						moves[n++] = MoveHelper.create(square, dest,
+								MoveHelper.CAPTURE);
+					break;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * checks if a square is attacked by a side, without allocating any
+	 * objects.
+	 * 
+	 * @param square
+	 *            the square
+	 * @param attacker
+	 *            the attacking side
+	 * @return true, if a piece of the attacker attacks the square
+	 */
+	private boolean isAttacked(int square, Side attacker) {
+		// pawns attack in the opposite direction of their moves
+		int dir = attacker == Side.WHITE ? -1 : 1;
+		for (int side_step = -10; side_step <= 10; side_step += 20) {
+			int from = square + dir + side_step;
+			if (SquareHelper.isValidSquare(from)
+					&& getSideFromBoard(from) == attacker
+					&& getPieceFromBoard(from) == Piece.PAWN)
+				return true;
+		}
+
+		for (int offset : KNIGHT_OFFSETS) {
+			int from = square + offset;
+			if (SquareHelper.isValidSquare(from)
+					&& getSideFromBoard(from) == attacker
+					&& getPieceFromBoard(from) == Piece.KNIGHT)
+				return true;
+		}
 
-		result = prime * result + active_color.ordinal();
+		for (int i = 0; i < QUEEN_OFFSETS.length; i++) {
+			int offset = QUEEN_OFFSETS[i];
+			boolean straight = i < 4;
+			for (int from = square + offset; SquareHelper.isValidSquare(from); from += offset) {
+				Piece piece = getPieceFromBoard(from);
+				if (piece == null)
+					continue;
+				if (getSideFromBoard(from) == attacker) {
+					if (piece == Piece.QUEEN
+							|| (straight && piece == Piece.ROOK)
+							|| (!straight && piece == Piece.BISHOP)
+							|| (piece == Piece.KING && from == square + offset))
+						return true;
+				}
+				break;
+			}
+		}
+		return false;
+	}
 
-		result = prime * result + en_passant_target;
+	@Override
+	public List<IMove> generateCaptures() {
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = generateCaptures(moves);
+		List<IMove> result = new ArrayList<IMove>(n);
 
+		for (int i = 0; i < n; i++)
+			if (!isCheckAfterMove(moves[i]))
+				result.add(MoveHelper.toMove(moves[i]));
 		return result;
 	}
 
+	@Override
+	public long getZobristKey() {
+		return zobrist_key;
+	}
+
+	@Override
+	public long getPawnKey() {
+		return pawn_key;
+	}
+
+	@Override
+	public int getPieceSquareScore() {
+		return PieceSquareTables.taper(midgame_score, endgame_score, phase);
+	}
+
 	@Override
 	public int getKingPos(Side side) {
 		return king_pos[side.ordinal()];
@@ -1693,12 +2324,23 @@ public class Position implements IPosition {
 
 	@Override
 	public void doMove(IMove move) {
+		doMove(move.getFromSquare(), move.getToSquare(), move.getPromotion());
+	}
 
-		int src = move.getFromSquare();
-		int dest = move.getToSquare();
+	@Override
+	public void doMove(int move) {
+		doMove(MoveHelper.getFromSquare(move), MoveHelper.getToSquare(move),
+				MoveHelper.getPromotion(move));
+	}
+
+	/**
+	 * see <code>doMove(IMove move)</code>
+	 */
+	private void doMove(int src, int dest, Piece promotion) {
 
 		Piece piece = getPieceFromBoard(src);
 		Piece capture = getPieceFromBoard(dest);
+		long old_zobrist_key = zobrist_key;
 
 		setOnBoard(dest, active_color, piece);
 		setOnBoard(src, null, null);
@@ -1706,13 +2348,13 @@ public class Position implements IPosition {
 		boolean resets_half_move_clock = false;
 
 		// if promotion
-		if (move.getPromotion() != null) {
-			setOnBoard(dest, active_color, move.getPromotion());
+		if (promotion != null) {
+			setOnBoard(dest, active_color, promotion);
 			resets_half_move_clock = true;
 			num_occupied_squares_by_color_and_type[active_color.ordinal() * 10
 					+ Piece.PAWN.ordinal()]--;
 			num_occupied_squares_by_color_and_type[active_color.ordinal() * 10
-					+ move.getPromotion().ordinal()]++;
+					+ promotion.ordinal()]++;
 		}
 		// If castling
 		else if (piece == Piece.KING && Math.abs((src - dest)) == 20) {
@@ -1747,8 +2389,11 @@ public class Position implements IPosition {
 					* 10 + capture.ordinal()]--;
 		}
 
-		IrreversibleMoveStack.addInfo(half_move_clock, castling,
-				en_passant_target, capture, is_check);
+		irr_move_stack.addInfo(half_move_clock, castling,
+				en_passant_target, capture, is_check, old_zobrist_key);
+
+		zobrist_key ^= Zobrist.getCastlingKey(castling)
+				^ Zobrist.getEnPassantKey(en_passant_target);
 
 		// reset half move clock
 		if (resets_half_move_clock)
@@ -1800,17 +2445,33 @@ public class Position implements IPosition {
 		// Change active_color after move
 		active_color = Side.getOppositeSide(active_color);
 
+		zobrist_key ^= Zobrist.getCastlingKey(castling)
+				^ Zobrist.getEnPassantKey(en_passant_target)
+				^ Zobrist.BLACK_TO_MOVE;
+		assert isZobristKeyValid();
+		assert isPieceSquareScoreValid();
+
 		resetCache();
 
 	}
 
 	@Override
 	public void undoMove(IMove move) {
+		undoMove(move.getFromSquare(), move.getToSquare(), move.getPromotion());
+	}
 
-		resetCache();
+	@Override
+	public void undoMove(int move) {
+		undoMove(MoveHelper.getFromSquare(move), MoveHelper.getToSquare(move),
+				MoveHelper.getPromotion(move));
+	}
 
-		int src = move.getFromSquare();
-		int dest = move.getToSquare();
+	/**
+	 * see <code>undoMove(IMove move)</code>
+	 */
+	private void undoMove(int src, int dest, Piece promotion) {
+
+		resetCache();
 
 		Piece piece = getPieceFromBoard(dest);
 
@@ -1818,13 +2479,13 @@ public class Position implements IPosition {
 		active_color = Side.getOppositeSide(active_color);
 
 		// get the missing information
-		MoveInfo inf = IrreversibleMoveStack.irr_move_info.removeLast();
-
-		en_passant_target = inf.en_passant_square;
-		Piece capture = inf.capture;
-		half_move_clock = inf.half_move_clock;
-		System.arraycopy(inf.castling, 0, castling, 0, 4);
-		is_check = inf.is_check;
+		en_passant_target = irr_move_stack.getEnPassantSquare();
+		Piece capture = irr_move_stack.getCapture();
+		half_move_clock = irr_move_stack.getHalfMoveClock();
+		irr_move_stack.getCastling(castling);
+		is_check = irr_move_stack.getIsCheck();
+		long old_zobrist_key = irr_move_stack.getZobristKey();
+		irr_move_stack.removeLast();
 
 		setOnBoard(src, active_color, piece);
 		if (capture != null)
@@ -1833,12 +2494,12 @@ public class Position implements IPosition {
 			setOnBoard(dest, null, null);
 
 		// if promotion
-		if (move.getPromotion() != null) {
+		if (promotion != null) {
 			setOnBoard(src, active_color, Piece.PAWN);
 			num_occupied_squares_by_color_and_type[active_color.ordinal() * 10
 					+ Piece.PAWN.ordinal()]++;
 			num_occupied_squares_by_color_and_type[active_color.ordinal() * 10
-					+ move.getPromotion().ordinal()]--;
+					+ promotion.ordinal()]--;
 		}
 		// If castling
 		else if (piece == Piece.KING && Math.abs((src - dest)) == 20) {
@@ -1874,11 +2535,47 @@ public class Position implements IPosition {
 			king_pos[active_color.ordinal()] = (byte) src;
 		}
 
+		// the key before the move was saved
+		zobrist_key = old_zobrist_key;
+		assert isZobristKeyValid();
+		assert isPieceSquareScoreValid();
+
 		is_mate = false;
 		is_stale_mate = false;
 
 	}
 
+	@Override
+	public void doNullMove() {
+		irr_move_stack.addInfo(half_move_clock, castling, en_passant_target,
+				null, is_check, zobrist_key);
+
+		half_move_clock++;
+		zobrist_key ^= Zobrist.getEnPassantKey(en_passant_target)
+				^ Zobrist.BLACK_TO_MOVE;
+		en_passant_target = -1;
+		active_color = Side.getOppositeSide(active_color);
+		assert isZobristKeyValid();
+
+		resetCache();
+	}
+
+	@Override
+	public void undoNullMove() {
+		resetCache();
+
+		active_color = Side.getOppositeSide(active_color);
+		en_passant_target = irr_move_stack.getEnPassantSquare();
+		half_move_clock = irr_move_stack.getHalfMoveClock();
+		is_check = irr_move_stack.getIsCheck();
+		zobrist_key = irr_move_stack.getZobristKey();
+		irr_move_stack.removeLast();
+		assert isZobristKeyValid();
+
+		is_mate = false;
+		is_stale_mate = false;
+	}
+
 	/**
 	 * Performs a incomplete version of doMove. This function only sets the new
 	 * figure, deletes the captures ones (are saved in side_capture and
@@ -1886,13 +2583,14 @@ public class Position implements IPosition {
 	 * to perform tinyDoMove twice, because the captured figure of the first
 	 * application will be lost.
 	 * 
-	 * @param move
-	 *            the move to be performed, must be a legal move
+	 * @param src
+	 *            the source square of the move, must be a legal move
+	 * @param dest
+	 *            the destination square of the move
+	 * @param promotion
+	 *            the promotion of the move, null if none
 	 */
-	private void tinyDoMove(IMove move) {
-
-		int src = move.getFromSquare();
-		int dest = move.getToSquare();
+	private void tinyDoMove(int src, int dest, Piece promotion) {
 
 		Piece piece = getPieceFromBoard(src);
 		Side s_piece = getSideFromBoard(src);
@@ -1903,8 +2601,8 @@ public class Position implements IPosition {
 		setOnBoard(src, null, null);
 
 		// if promotion
-		if (move.getPromotion() != null) {
-			setOnBoard(dest, s_piece, move.getPromotion());
+		if (promotion != null) {
+			setOnBoard(dest, s_piece, promotion);
 		}
 		// If castling
 		else if (piece == Piece.KING && Math.abs((src - dest)) == 20) {
@@ -1942,13 +2640,14 @@ public class Position implements IPosition {
 	 * inverts the function tinyDoMove(), note that only one application can be
 	 * inverted!
 	 * 
-	 * @param move
-	 *            the move to be inverted.
+	 * @param src
+	 *            the source square of the move to be inverted.
+	 * @param dest
+	 *            the destination square of the move
+	 * @param promotion
+	 *            the promotion of the move, null if none
 	 */
-	private void tinyUndoMove(IMove move) {
-
-		int src = move.getFromSquare();
-		int dest = move.getToSquare();
+	private void tinyUndoMove(int src, int dest, Piece promotion) {
 
 		Piece piece = getPieceFromBoard(dest);
 		Side s_piece = getSideFromBoard(dest);
@@ -1959,7 +2658,7 @@ public class Position implements IPosition {
 		setOnBoard(dest, side_capture, piece_capture);
 		setOnBoard(src, s_piece, piece);
 		// if promotion
-		if (move.getPromotion() != null) {
+		if (promotion != null) {
 			setOnBoard(src, s_piece, Piece.PAWN);
 		}
 		// If castling
@@ -1,86 +1,314 @@
 package mitzi;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * After creating a new <code>AnalysisResult</code> instance, use this class to
  * cache it for later lookup of moves, score, etc. The AnalysisResults are
- * indexed by the HashCode of the corresponding position, therefore it can
- * happen, that different AnalysisResults have the same HashCode. In such a
- * case, the old values get overridden. The AnalysisResults store a different
- * hashvalue to reduce the probability of using a wrong AnalysisResult, if two
- * positions have the same HashCode.
- * 
+ * packed into a fixed-size table of <code>long</code>s (a transposition table),
+ * so no objects are kept alive by the cache. The table is indexed by the
+ * lower bits of the Zobrist key of the corresponding position, therefore it
+ * can happen, that different positions are mapped to the same bucket. In such a
+ * case, the entries are replaced using a depth/age replacement scheme. Every
+ * entry stores the whole Zobrist key to verify, that the AnalysisResult belongs
+ * to the position.
+ *
+ * The table can be used by several search threads at the same time without
+ * any locks. Each entry consists of two <code>long</code>s, the key XOR the
+ * data and the data. If two threads write the same entry at the same time, the
+ * words of the entry may belong to different writes. Then the key computed from
+ * the stored words does not match and the torn entry is treated as a miss. The
+ * data is packed as follows:
+ *
+ * <pre>
+ * bits  0-15: score (short)
+ * bits 16-23: plys_to_eval0
+ * bits 24-31: plys_to_seldepth
+ * bits 32-33: flag (0 if none, ordinal + 1 else)
+ * bits 34-35: is_stalemate (0 if null, 1 if false, 2 if true)
+ * bit     36: needs_deeper
+ * bits 37-53: best move (packed by MoveHelper without flags, 0 if none)
+ * bits 56-63: age of the entry
+ * </pre>
+ *
+ * The size of the table is given in megabytes, either at startup with the
+ * system property <code>mitzi.hash</code> or via the UCI option "Hash".
  */
 public class ResultCache {
 
-	private static final int MAX_ENTRIES = 3000000;
+	/**
+	 * the default size of the table in megabytes.
+	 */
+	public static final int DEFAULT_SIZE = 64;
+
+	/**
+	 * the maximal size of the table in megabytes, such that the table fits in a
+	 * single array.
+	 */
+	public static final int MAX_SIZE = 8192;
 
 	/**
-	 * A map from the Position's <code>hashCode</code> to the AnalysisResult.
-	 * The size of the table is limited with <code>MAX_ENTRIES</code>
+	 * the number of bytes of an entry (key and data)
 	 */
-	private static LinkedHashMap<Integer, AnalysisResult> position_cache = new LinkedHashMap<Integer, AnalysisResult>(
-			MAX_ENTRIES + 1, 1) {
+	private static final int ENTRY_BYTES = 16;
 
-		private static final long serialVersionUID = 4582735742585308092L;
+	/**
+	 * the number of entries in a bucket. A bucket (4 * 16 bytes) fits in a
+	 * cache line.
+	 */
+	private static final int BUCKET_SIZE = 4;
 
-		protected boolean removeEldestEntry(
-				Map.Entry<Integer, AnalysisResult> eldest) {
-			return size() > MAX_ENTRIES;
-		}
-	};
+	/**
+	 * the number of entries, which are sampled for <code>getHashfull()</code>
+	 */
+	private static final int HASHFULL_SAMPLE = 1000;
+
+	/**
+	 * the table, containing for each entry the key XOR the packed data and the
+	 * packed data. The number of entries is always a power of two.
+	 */
+	private static volatile long[] table;
+
+	/**
+	 * the age of the current search, used for replacement.
+	 */
+	private static volatile int age = 0;
+
+	static {
+		setSize(Integer.getInteger("mitzi.hash", DEFAULT_SIZE));
+	}
 
 	/**
 	 * Cannot be instantiated. For access to the static cache use
-	 * <code>ResultCache.getPosition(p)</code>.
+	 * <code>ResultCache.getResult(p)</code>.
 	 */
 	private ResultCache() {
 	}
 
+	/**
+	 * Resizes the table to the largest power of two number of entries fitting
+	 * in the given size. All stored results get lost. This must not be called
+	 * during a search.
+	 *
+	 * @param megabytes
+	 *            the new size in megabytes, between 1 and MAX_SIZE
+	 */
+	public static void setSize(int megabytes) {
+		if (megabytes < 1 || megabytes > MAX_SIZE)
+			throw new IllegalArgumentException("invalid hash size: "
+					+ megabytes);
+
+		long max_entries = (long) megabytes * 1024 * 1024 / ENTRY_BYTES;
+		int entries = BUCKET_SIZE;
+		while (entries * 2L <= max_entries)
+			entries *= 2;
+
+		// release the old table before allocating the new one
+		table = null;
+		table = new long[2 * entries];
+		age = 0;
+	}
+
+	/**
+	 * @return the size of the table in megabytes
+	 */
+	public static int getSize() {
+		return (int) ((long) table.length / 2 * ENTRY_BYTES / (1024 * 1024));
+	}
+
+	/**
+	 * Removes all stored results, e.g. if a new game starts. This must not be
+	 * called during a search.
+	 */
+	public static void clear() {
+		Arrays.fill(table, 0);
+		age = 0;
+	}
+
 	/**
 	 * Looks up a <code>Position</code> in the cache and returns the saved value
-	 * if found and with coinciding second hashvalue. otherwise null.
-	 * 
+	 * if found and with coinciding Zobrist key. otherwise null.
+	 *
 	 * @param lookup
 	 *            the <code>Position</code> to look up in the cache
-	 * @return a previously cached <code>AnalysisResult</code> if available,
-	 *         null otherwise.
+	 * @return a new <code>AnalysisResult</code> with the previously cached
+	 *         values if available, null otherwise.
 	 */
 	public static AnalysisResult getResult(IPosition lookup) {
-		int hash = lookup.hashCode();
-		AnalysisResult ce = position_cache.get(hash);
-		if (ce == null || lookup.hashCode2() != ce.hashvalue)
-			return null;
-		else
-			return ce;
+		return getResult(lookup.getZobristKey());
 	}
 
 	/**
-	 * stores a AnalysisResult corresponding to a Position. The second hashvalue is automatically set here.
-	 * @param pos the position corresponding to the AnalysisResult
-	 * @param ce the AnalysisResult
+	 * Looks up a Zobrist key in the cache and returns the saved value if found,
+	 * otherwise null.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @return a new <code>AnalysisResult</code> with the previously cached
+	 *         values if available, null otherwise.
+	 */
+	public static AnalysisResult getResult(long key) {
+		long[] t = table;
+		int index = getIndex(t, key);
+
+		for (int i = index; i < index + BUCKET_SIZE * 2; i += 2) {
+			long data = t[i + 1];
+			if ((t[i] ^ data) == key && data != 0)
+				return unpack(data);
+		}
+		return null;
+	}
+
+	/**
+	 * stores a AnalysisResult corresponding to a Position. An entry of the
+	 * same position is always overridden, otherwise the entry with the
+	 * smallest depth and the oldest age in the bucket is replaced.
+	 *
+	 * @param pos
+	 *            the position corresponding to the AnalysisResult
+	 * @param ce
+	 *            the AnalysisResult
 	 */
 	public static void setResult(IPosition pos, AnalysisResult ce) {
-		ce.hashvalue = pos.hashCode2();
-		int hash = pos.hashCode();
-		position_cache.put(hash, ce);
+		setResult(pos.getZobristKey(), ce);
+	}
+
+	/**
+	 * stores a AnalysisResult corresponding to a Zobrist key, see
+	 * <code>setResult(IPosition, AnalysisResult)</code>.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param ce
+	 *            the AnalysisResult
+	 */
+	public static void setResult(long key, AnalysisResult ce) {
+		long[] t = table;
+		int index = getIndex(t, key);
+		int current_age = age;
+
+		int replace = index;
+		int replace_value = Integer.MAX_VALUE;
+		for (int i = index; i < index + BUCKET_SIZE * 2; i += 2) {
+			long data = t[i + 1];
+			if (data == 0 || (t[i] ^ data) == key) {
+				replace = i;
+				break;
+			}
+			// prefer to replace shallow results of previous searches
+			int old_age = (current_age - (int) (data >>> 56)) & 0xFF;
+			int value = (int) ((data >>> 16) & 0xFF) - 4 * old_age;
+			if (value < replace_value) {
+				replace_value = value;
+				replace = i;
+			}
+		}
+
+		long data = pack(ce, current_age);
+		t[replace] = key ^ data;
+		t[replace + 1] = data;
+	}
+
+	/**
+	 * computes the index of the first entry of the bucket of a key.
+	 *
+	 * @param t
+	 *            the table
+	 * @param key
+	 *            the Zobrist key
+	 * @return the index in the table
+	 */
+	private static int getIndex(long[] t, long key) {
+		int bucket_mask = t.length / (2 * BUCKET_SIZE) - 1;
+		return ((int) key & bucket_mask) * BUCKET_SIZE * 2;
+	}
 
+	/**
+	 * Should be called before every new search, such that the results of
+	 * previous searches are replaced first.
+	 */
+	public static void newSearch() {
+		age = (age + 1) & 0xFF;
 	}
-	
+
 	/**
-	 * 
+	 * counts all entries of the table, this is slow for large tables.
+	 *
 	 * @return the number of stored results in this cache
 	 */
 	public static int size() {
-		return position_cache.size();
+		long[] t = table;
+		int size = 0;
+		for (int i = 1; i < t.length; i += 2)
+			if (t[i] != 0)
+				size++;
+		return size;
 	}
 
-	/** 
+	/**
+	 * estimates the filling of the table from the first entries. Only the
+	 * entries of the current search are counted, the entries of previous
+	 * searches are replaced first.
+	 *
 	 * @return the hash is x permill full
 	 */
 	public static int getHashfull() {
-		return (int) ((double) position_cache.size() / MAX_ENTRIES * 1000);
+		long[] t = table;
+		int current_age = age;
+		int sample = Math.min(HASHFULL_SAMPLE, t.length / 2);
+		int used = 0;
+		for (int i = 0; i < sample; i++) {
+			long data = t[2 * i + 1];
+			if (data != 0 && (int) (data >>> 56) == current_age)
+				used++;
+		}
+		return used * 1000 / sample;
+	}
+
+	/**
+	 * packs an AnalysisResult into a long.
+	 *
+	 * @param ce
+	 *            the AnalysisResult
+	 * @param age
+	 *            the age of the entry
+	 * @return the packed data
+	 */
+	private static long pack(AnalysisResult ce, int age) {
+		long data = ce.score & 0xFFFFL;
+		data |= (ce.plys_to_eval0 & 0xFFL) << 16;
+		data |= (ce.plys_to_seldepth & 0xFFL) << 24;
+		if (ce.flag != null)
+			data |= (ce.flag.ordinal() + 1L) << 32;
+		if (ce.is_stalemate != null)
+			data |= (ce.is_stalemate ? 2L : 1L) << 34;
+		if (ce.needs_deeper)
+			data |= 1L << 36;
+		data |= (long) MoveHelper.fromMove(ce.best_move) << 37;
+		data |= (long) age << 56;
+		return data;
+	}
+
+	/**
+	 * creates a new AnalysisResult from the packed data. The list of good moves
+	 * contains only the best move.
+	 *
+	 * @param data
+	 *            the packed data
+	 * @return the new AnalysisResult
+	 */
+	private static AnalysisResult unpack(long data) {
+		int flag = (int) (data >>> 32) & 0x3;
+		int is_stalemate = (int) (data >>> 34) & 0x3;
+
+		AnalysisResult ce = new AnalysisResult((short) data,
+				is_stalemate == 0 ? null : is_stalemate == 2,
+				((data >>> 36) & 1) != 0, (byte) (data >>> 16),
+				(byte) (data >>> 24), flag == 0 ? null
+						: Flag.values()[flag - 1], MoveHelper.toMove((int) (data >>> 37)
+						& MoveHelper.MOVE_MASK));
+		if (ce.best_move != null)
+			ce.best_moves.add(ce.best_move);
+		return ce;
 	}
 }
@@ -0,0 +1,243 @@
+package mitzi;
+
+/**
+ * Static Exchange Evaluation (SEE): computes the material balance of a
+ * capture, if both sides alternately recapture on the destination square with
+ * their least valuable attacker. Each side may stop the exchange, if a further
+ * capture would lose material. Attackers behind a sliding piece, which has
+ * already captured (x-rays), take part in the exchange. Pins and checks are
+ * ignored.
+ *
+ * The computation only uses getSideFromBoard and getPieceFromBoard, so it works
+ * for every implementation of IPosition. The position is not changed.
+ *
+ * @see <a
+ *      href="http://chessprogramming.wikispaces.com/Static+Exchange+Evaluation">Static
+ *      Exchange Evaluation</a>
+ */
+public final class StaticExchange {
+
+	/**
+	 * the values of the pieces, in the order of <code>Piece</code>. A king can
+	 * only capture on an undefended square.
+	 */
+	private static final int[] piece_values = { 100, 500, 325, 325, 975, 20000 };
+
+	private static final int[] KNIGHT_OFFSETS = { 21, 12, -8, -19, -21, -12,
+			8, 19 };
+
+	private static final int[] DIAGONAL_OFFSETS = { 11, 9, -9, -11 };
+
+	private static final int[] LINE_OFFSETS = { 10, 1, -1, -10 };
+
+	/**
+	 * the maximal number of captures on one square, the size of the buffer of
+	 * see()
+	 */
+	public static final int MAX_CAPTURES = 32;
+
+	private StaticExchange() {
+	}
+
+	/**
+	 * @return the value of a piece for the exchange
+	 */
+	public static int getValue(Piece piece) {
+		return piece_values[piece.ordinal()];
+	}
+
+	/**
+	 * computes the result of the exchange after a move.
+	 *
+	 * @param position
+	 *            the position, where the move is played
+	 * @param move
+	 *            a packed pseudolegal move, the flag EN_PASSANT must be set
+	 *            for en passant captures.
+	 * @return the gained material in centipawns from the view of the moving
+	 *         side, negative if the move loses material
+	 */
+	public static int see(IPosition position, int move) {
+		return see(position, move, new int[MAX_CAPTURES]);
+	}
+
+	/**
+	 * computes the result of the exchange after a move without allocating.
+	 *
+	 * @param position
+	 *            the position, where the move is played
+	 * @param move
+	 *            a packed pseudolegal move, the flag EN_PASSANT must be set
+	 *            for en passant captures.
+	 * @param gain
+	 *            a buffer of MAX_CAPTURES elements, owned by the caller
+	 * @return the gained material in centipawns from the view of the moving
+	 *         side, negative if the move loses material
+	 */
+	public static int see(IPosition position, int move, int[] gain) {
+		int src = MoveHelper.getFromSquare(move);
+		int dest = MoveHelper.getToSquare(move);
+
+		// the captured squares, indexed like Bitboards
+		long removed = 1L << Bitboards.toIndex(src);
+
+		Piece victim = position.getPieceFromBoard(dest);
+		if (MoveHelper.isEnPassant(move)) {
+			victim = Piece.PAWN;
+			removed |= 1L << Bitboards.toIndex(SquareHelper.getColumn(dest)
+					* 10 + SquareHelper.getRow(src));
+		}
+		gain[0] = victim == null ? 0 : getValue(victim);
+
+		Piece on_square = position.getPieceFromBoard(src);
+		Piece promotion = MoveHelper.getPromotion(move);
+		if (promotion != null) {
+			gain[0] += getValue(promotion) - getValue(Piece.PAWN);
+			on_square = promotion;
+		}
+
+		Side side = Side.getOppositeSide(position.getSideFromBoard(src));
+		int d = 0;
+		while (d < MAX_CAPTURES - 1) {
+			int from = getLeastValuableAttacker(position, dest, side, removed);
+			if (from == -1)
+				break;
+
+			// the gain, if the piece on the square is captured
+			d++;
+			gain[d] = getValue(on_square) - gain[d - 1];
+			Piece attacker = position.getPieceFromBoard(from);
+			if (attacker == Piece.PAWN
+					&& SquareHelper.getRow(dest) == SquareHelper
+							.getRowForSide(side, 8)) {
+				gain[d] += getValue(Piece.QUEEN) - getValue(Piece.PAWN);
+				attacker = Piece.QUEEN;
+			}
+			// the capturing side loses material, whether it captures or not,
+			// so the capture is not considered
+			if (Math.max(-gain[d - 1], gain[d]) < 0) {
+				d--;
+				break;
+			}
+
+			removed |= 1L << Bitboards.toIndex(from);
+			on_square = attacker;
+			side = Side.getOppositeSide(side);
+		}
+
+		// each side chooses between capturing and stopping the exchange
+		for (; d > 0; d--)
+			gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+		return gain[0];
+	}
+
+	/**
+	 * computes the result of the exchange after a move.
+	 *
+	 * @param position
+	 *            the position, where the move is played
+	 * @param move
+	 *            a pseudolegal move
+	 * @return the gained material in centipawns from the view of the moving
+	 *         side, negative if the move loses material
+	 */
+	public static int see(IPosition position, IMove move) {
+		int src = move.getFromSquare();
+		int dest = move.getToSquare();
+		int flags = 0;
+		if (position.getPieceFromBoard(src) == Piece.PAWN
+				&& SquareHelper.getColumn(src) != SquareHelper.getColumn(dest)
+				&& position.getSideFromBoard(dest) == null)
+			flags = MoveHelper.EN_PASSANT;
+		return see(position,
+				MoveHelper.create(src, dest, move.getPromotion(), flags));
+	}
+
+	/**
+	 * finds the least valuable piece of a side, which attacks a square. The
+	 * removed pieces have already captured on the square, so the pieces
+	 * behind them attack the square as well.
+	 *
+	 * @param removed
+	 *            the removed squares, indexed like Bitboards
+	 * @return the square of the attacker, -1 if there is none
+	 */
+	private static int getLeastValuableAttacker(IPosition position,
+			int square, Side side, long removed) {
+		// the pawns attack the square from the row behind
+		int behind = side == Side.WHITE ? -1 : 1;
+		for (int offset = -10; offset <= 10; offset += 20)
+			if (isPiece(position, square + offset + behind, side, Piece.PAWN,
+					removed))
+				return square + offset + behind;
+
+		for (int offset : KNIGHT_OFFSETS)
+			if (isPiece(position, square + offset, side, Piece.KNIGHT, removed))
+				return square + offset;
+
+		// the first piece in each direction, bishops before rooks before
+		// queens
+		int best = -1;
+		int best_value = Integer.MAX_VALUE;
+		for (int offset : DIAGONAL_OFFSETS) {
+			int from = getFirstPiece(position, square, offset, removed);
+			if (from != -1 && position.getSideFromBoard(from) == side) {
+				Piece piece = position.getPieceFromBoard(from);
+				if ((piece == Piece.BISHOP || piece == Piece.QUEEN)
+						&& getValue(piece) < best_value) {
+					best = from;
+					best_value = getValue(piece);
+				}
+			}
+		}
+		if (best_value == getValue(Piece.BISHOP))
+			return best;
+		for (int offset : LINE_OFFSETS) {
+			int from = getFirstPiece(position, square, offset, removed);
+			if (from != -1 && position.getSideFromBoard(from) == side) {
+				Piece piece = position.getPieceFromBoard(from);
+				if ((piece == Piece.ROOK || piece == Piece.QUEEN)
+						&& getValue(piece) < best_value) {
+					best = from;
+					best_value = getValue(piece);
+				}
+			}
+		}
+		if (best != -1)
+			return best;
+
+		for (int offset : DIAGONAL_OFFSETS)
+			if (isPiece(position, square + offset, side, Piece.KING, removed))
+				return square + offset;
+		for (int offset : LINE_OFFSETS)
+			if (isPiece(position, square + offset, side, Piece.KING, removed))
+				return square + offset;
+		return -1;
+	}
+
+	/**
+	 * @return true, if the square is on the board, not removed and occupied by
+	 *         the given piece
+	 */
+	private static boolean isPiece(IPosition position, int square, Side side,
+			Piece piece, long removed) {
+		return SquareHelper.isValidSquare(square)
+				&& (removed & 1L << Bitboards.toIndex(square)) == 0
+				&& position.getSideFromBoard(square) == side
+				&& position.getPieceFromBoard(square) == piece;
+	}
+
+	/**
+	 * walks from a square in a direction and skips the removed squares.
+	 *
+	 * @return the first occupied square, -1 if there is none
+	 */
+	private static int getFirstPiece(IPosition position, int square,
+			int offset, long removed) {
+		for (int s = square + offset; SquareHelper.isValidSquare(s); s += offset)
+			if ((removed & 1L << Bitboards.toIndex(s)) == 0
+					&& position.getSideFromBoard(s) != null)
+				return s;
+		return -1;
+	}
+}
@@ -0,0 +1,304 @@
+package mitzi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Locale;
+
+/**
+ * This class reads the commands of the Universal Chess Interface (UCI) from the
+ * standard input and passes them to MitziBrain. The answers and infos are sent
+ * to the standard output, see also UCIReporter.
+ *
+ * @see <a href="http://wbec-ridderkerk.nl/html/UCIProtocol.html">UCI
+ *      Protocol</a>
+ */
+public class UCIEngine {
+
+	/**
+	 * the current game state
+	 */
+	private GameState game_state = new GameState();
+
+	/**
+	 * the engine
+	 */
+	private MitziBrain brain = new MitziBrain();
+
+	/**
+	 * the thread running the current search, null if there is no search.
+	 */
+	private Thread search_thread;
+
+	public static void main(String[] args) throws IOException {
+		UCIEngine engine = new UCIEngine();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				System.in));
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!engine.command(line.trim()))
+				break;
+		}
+		engine.stop();
+		System.exit(0);
+	}
+
+	/**
+	 * executes a single UCI command.
+	 *
+	 * @param line
+	 *            the command
+	 * @return false if the engine should quit, true else.
+	 */
+	private boolean command(String line) {
+		String[] tokens = line.split("\\s+");
+
+		switch (tokens[0]) {
+		case "uci":
+			System.out.println("id name Mitzi");
+			System.out.println("id author the Mitzi team");
+			System.out.println("option name Hash type spin default "
+					+ ResultCache.DEFAULT_SIZE + " min 1 max "
+					+ ResultCache.MAX_SIZE);
+			System.out.println("option name Eval Cache type spin default "
+					+ EvalCache.DEFAULT_SIZE + " min 0 max "
+					+ EvalCache.MAX_SIZE);
+			System.out.println("option name Threads type spin default 1 min 1 max "
+					+ MitziBrain.MAX_THREADS);
+			System.out.println("option name SMP Mode type combo default LazySMP var LazySMP var YBWC");
+			System.out.println("option name Bitboards type check default "
+					+ Boolean.getBoolean("mitzi.bitboards"));
+			System.out.println("option name Null Move Verification type check default true");
+			System.out.println("option name LMR Base type spin default "
+					+ MitziBrain.DEFAULT_LMR_BASE + " min 0 max "
+					+ MitziBrain.MAX_LMR_PARAMETER);
+			System.out.println("option name LMR Divisor type spin default "
+					+ MitziBrain.DEFAULT_LMR_DIVISOR + " min 1 max "
+					+ MitziBrain.MAX_LMR_PARAMETER);
+			System.out.println("option name Futility Margin type spin default "
+					+ MitziBrain.DEFAULT_FUTILITY_MARGIN + " min 0 max "
+					+ MitziBrain.MAX_MARGIN);
+			System.out.println("option name Reverse Futility Margin type spin default "
+					+ MitziBrain.DEFAULT_REVERSE_FUTILITY_MARGIN + " min 0 max "
+					+ MitziBrain.MAX_MARGIN);
+			System.out.println("option name Razor Margin type spin default "
+					+ MitziBrain.DEFAULT_RAZOR_MARGIN + " min 0 max "
+					+ MitziBrain.MAX_MARGIN);
+			System.out.println("uciok");
+			break;
+		case "isready":
+			System.out.println("readyok");
+			break;
+		case "setoption":
+			setOption(tokens);
+			break;
+		case "ucinewgame":
+			stop();
+			ResultCache.clear();
+			EvalCache.clear();
+			game_state = new GameState();
+			break;
+		case "position":
+			stop();
+			setPosition(tokens);
+			break;
+		case "go":
+			stop();
+			go(tokens);
+			break;
+		case "stop":
+			stop();
+			break;
+		case "quit":
+			return false;
+		default:
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * handles "setoption name [name] value [value]". Unknown options are
+	 * ignored.
+	 *
+	 * @param tokens
+	 *            the tokens of the command
+	 */
+	private void setOption(String[] tokens) {
+		StringBuilder name = new StringBuilder();
+		String value = null;
+		int i = 2;
+		for (; i < tokens.length && !tokens[i].equals("value"); i++)
+			name.append(name.length() == 0 ? "" : " ").append(tokens[i]);
+		if (i + 1 < tokens.length)
+			value = tokens[i + 1];
+
+		try {
+			switch (name.toString().toLowerCase(Locale.ENGLISH)) {
+			case "hash":
+				ResultCache.setSize(Integer.parseInt(value));
+				break;
+			case "eval cache":
+				EvalCache.setSize(Integer.parseInt(value));
+				break;
+			case "threads":
+				brain.setThreads(Integer.parseInt(value));
+				break;
+			case "smp mode":
+				if ("ybwc".equalsIgnoreCase(value))
+					brain.setSMPMode(MitziBrain.SMPMode.YBWC);
+				else if ("lazysmp".equalsIgnoreCase(value))
+					brain.setSMPMode(MitziBrain.SMPMode.LAZY_SMP);
+				else
+					throw new IllegalArgumentException();
+				break;
+			case "bitboards":
+				if (!"true".equalsIgnoreCase(value)
+						&& !"false".equalsIgnoreCase(value))
+					throw new IllegalArgumentException();
+				brain.setBitboards(Boolean.parseBoolean(value));
+				break;
+			case "null move verification":
+				if (!"true".equalsIgnoreCase(value)
+						&& !"false".equalsIgnoreCase(value))
+					throw new IllegalArgumentException();
+				brain.setNullMoveVerification(Boolean.parseBoolean(value));
+				break;
+			case "lmr base":
+				brain.setLmrBase(Integer.parseInt(value));
+				break;
+			case "lmr divisor":
+				brain.setLmrDivisor(Integer.parseInt(value));
+				break;
+			case "futility margin":
+				brain.setFutilityMargin(Integer.parseInt(value));
+				break;
+			case "reverse futility margin":
+				brain.setReverseFutilityMargin(Integer.parseInt(value));
+				break;
+			case "razor margin":
+				brain.setRazorMargin(Integer.parseInt(value));
+				break;
+			default:
+				UCIReporter.sendInfoString("unknown option " + name);
+				break;
+			}
+		} catch (IllegalArgumentException e) {
+			UCIReporter.sendInfoString("invalid value for option " + name);
+		}
+	}
+
+	/**
+	 * handles "position [fen fenstring | startpos] moves [move1] ... [movei]"
+	 *
+	 * @param tokens
+	 *            the tokens of the command
+	 */
+	private void setPosition(String[] tokens) {
+		int i = 1;
+		GameState new_state = new GameState();
+		if (tokens.length > 1 && tokens[1].equals("fen")) {
+			StringBuilder fen = new StringBuilder();
+			for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++)
+				fen.append(tokens[i]).append(" ");
+			new_state.setToFEN(fen.toString().trim());
+		} else {
+			i = 2;
+		}
+
+		if (i < tokens.length && tokens[i].equals("moves"))
+			for (i++; i < tokens.length; i++)
+				new_state.doMove(new Move(tokens[i]));
+
+		game_state = new_state;
+	}
+
+	/**
+	 * handles "go", supported are the parameters wtime, btime, winc, binc,
+	 * movestogo, movetime, depth and infinite. The search is done in a separate
+	 * thread, which sends "bestmove" after the search is finished. "go perft
+	 * [depth]" counts the nodes of the move tree instead, see Perft.
+	 *
+	 * @param tokens
+	 *            the tokens of the command
+	 */
+	private void go(String[] tokens) {
+		if (tokens.length > 2 && tokens[1].equals("perft")) {
+			brain.set(game_state);
+			Perft.printDivide(brain.copyRootPosition(),
+					Integer.parseInt(tokens[2]), Runtime.getRuntime()
+							.availableProcessors(), System.out);
+			return;
+		}
+
+		int movetime = 0, depth = 200, moves_to_go = 30;
+		int[] time = new int[2], inc = new int[2];
+		boolean infinite = false;
+
+		for (int i = 1; i < tokens.length; i++) {
+			switch (tokens[i]) {
+			case "wtime":
+				time[Side.WHITE.ordinal()] = Integer.parseInt(tokens[++i]);
+				break;
+			case "btime":
+				time[Side.BLACK.ordinal()] = Integer.parseInt(tokens[++i]);
+				break;
+			case "winc":
+				inc[Side.WHITE.ordinal()] = Integer.parseInt(tokens[++i]);
+				break;
+			case "binc":
+				inc[Side.BLACK.ordinal()] = Integer.parseInt(tokens[++i]);
+				break;
+			case "movestogo":
+				moves_to_go = Math.max(1, Integer.parseInt(tokens[++i]));
+				break;
+			case "movetime":
+				movetime = Integer.parseInt(tokens[++i]);
+				break;
+			case "depth":
+				depth = Integer.parseInt(tokens[++i]);
+				break;
+			case "infinite":
+				infinite = true;
+				break;
+			default:
+				break;
+			}
+		}
+
+		int side = game_state.getPosition().getActiveColor().ordinal();
+		if (movetime == 0 && time[side] > 0)
+			movetime = time[side] / moves_to_go + inc[side] / 2;
+
+		final int search_time = movetime;
+		final int search_depth = depth;
+		final boolean search_infinite = infinite;
+		brain.set(game_state);
+		search_thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				IMove best_move = brain.search(search_time, search_time,
+						search_depth, search_infinite, null);
+				System.out.println("bestmove " + best_move);
+			}
+		});
+		search_thread.start();
+	}
+
+	/**
+	 * stops the current search and waits until "bestmove" is sent.
+	 */
+	private void stop() {
+		if (search_thread == null)
+			return;
+		if (search_thread.isAlive())
+			brain.stop();
+		try {
+			search_thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		search_thread = null;
+	}
+}
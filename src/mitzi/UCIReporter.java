@@ -24,9 +24,7 @@ public final class UCIReporter {
 			this.string = string;
 		}
 	}
-	
-	private static String last_pv = "";
-	
+
 	private UCIReporter() {
 	};
 
@@ -53,6 +51,22 @@ public final class UCIReporter {
 		System.out.println("info " + type.string + " " + eval_counter);
 	}
 
+	/**
+	 * Send the hit rate of a hash table to the GUI.
+	 * 
+	 * @param name
+	 *            the name of the table
+	 * @param hits
+	 *            the number of found entries
+	 * @param probes
+	 *            the number of lookups
+	 */
+	public static void sendInfoHitRate(String name, long hits, long probes) {
+		long permill = probes == 0 ? 0 : hits * 1000 / probes;
+		sendInfoString(name + " hit rate " + permill / 10 + "." + permill
+				% 10 + "% of " + probes + " probes");
+	}
+
 	/**
 	 * Send information about the currently searched move to the GUI.
 	 * 
@@ -72,17 +86,23 @@ public final class UCIReporter {
 	/**
 	 * The Principal variation (PV) is a sequence of moves that programs
 	 * consider best and therefore expect to be played. Also all infos belonging
-	 * to the PV should be sent together.
+	 * to the PV should be sent together. The PV is only sent, if it differs
+	 * from the last sent PV of the same search.
 	 * 
 	 * @param position
 	 *            a Position with an AnalysisResult
 	 * @param time
 	 *            the time searched in ms
+	 * @param last_pv
+	 *            the last PV sent by the search, as returned by this method
+	 * @return the current PV, which has to be passed as last_pv in the next
+	 *         call.
 	 */
-	public static void sendInfoPV(IPosition position, long time) {
+	public static String sendInfoPV(IPosition position, long time,
+			String last_pv) {
 		AnalysisResult result = position.getAnalysisResult();
 		if (result == null)
-			return;
+			return last_pv;
 
 		StringBuilder pv = new StringBuilder();
 
@@ -112,10 +132,10 @@ public final class UCIReporter {
 		}
 
 		String new_pv = pv.toString();
-		if (!last_pv.equals(new_pv)) {
+		if (!new_pv.equals(last_pv)) {
 			System.out.print(new_pv);
 			System.out.println(" time " + time);
-			last_pv = new_pv;
 		}
+		return new_pv;
 	}
 }
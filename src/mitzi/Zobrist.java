@@ -0,0 +1,100 @@
+package mitzi;
+
+import java.util.Random;
+
+/**
+ * Contains the random keys for Zobrist hashing. The key of a position is the
+ * XOR of the keys of all pieces on their squares, the castling rights, the en
+ * passant column and the side to move. Since XOR is its own inverse, the key
+ * can be updated incrementally, when a piece is set or removed.
+ *
+ * @see <a
+ *      href="http://chessprogramming.wikispaces.com/Zobrist+Hashing">Zobrist
+ *      Hashing</a>
+ */
+public final class Zobrist {
+
+	/**
+	 * the keys for each side, piece and array index (see
+	 * <code>Position.square_to_array_index</code>). The 65th index (outside of
+	 * the board) is always 0.
+	 */
+	private static final long[] piece_keys = new long[2 * 6 * 65];
+
+	/**
+	 * the keys for the castling rights, in the same order as
+	 * <code>Position.castling</code>
+	 */
+	private static final long[] castling_keys = new long[4];
+
+	/**
+	 * the keys for the column of the en passant target, indexed by the column.
+	 */
+	private static final long[] en_passant_keys = new long[9];
+
+	/**
+	 * the key, if black has to move
+	 */
+	public static final long BLACK_TO_MOVE;
+
+	static {
+		// fixed seed, such that the keys are the same in every run
+		Random random = new Random(0x6D69747A69L);
+
+		for (int i = 0; i < piece_keys.length; i++)
+			if (i % 65 != 64)
+				piece_keys[i] = random.nextLong();
+		for (int i = 0; i < castling_keys.length; i++)
+			castling_keys[i] = random.nextLong();
+		for (int i = 1; i < en_passant_keys.length; i++)
+			en_passant_keys[i] = random.nextLong();
+		BLACK_TO_MOVE = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * returns the key for a piece of a side on a given array index.
+	 *
+	 * @param side
+	 *            the side of the piece
+	 * @param piece
+	 *            the piece
+	 * @param index
+	 *            the array index of the square (0-64)
+	 * @return the key
+	 */
+	public static long getPieceKey(Side side, Piece piece, int index) {
+		return piece_keys[(side.ordinal() * 6 + piece.ordinal()) * 65 + index];
+	}
+
+	/**
+	 * returns the key for the castling rights.
+	 *
+	 * @param castling
+	 *            the castling array, -1 if the castling is not allowed.
+	 * @return the key
+	 */
+	public static long getCastlingKey(int[] castling) {
+		long key = 0;
+		for (int i = 0; i < 4; i++)
+			if (castling[i] != -1)
+				key ^= castling_keys[i];
+		return key;
+	}
+
+	/**
+	 * returns the key for the en passant target square.
+	 *
+	 * @param en_passant_target
+	 *            the en passant target square, -1 if none
+	 * @return the key, 0 if there is no en passant target
+	 */
+	public static long getEnPassantKey(int en_passant_target) {
+		if (en_passant_target == -1)
+			return 0;
+		return en_passant_keys[SquareHelper.getColumn(en_passant_target)];
+	}
+
+}
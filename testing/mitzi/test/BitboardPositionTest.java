@@ -0,0 +1,132 @@
+package mitzi.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mitzi.*;
+
+import org.junit.Test;
+
+public class BitboardPositionTest {
+
+	private static final String[] FENS = Perft.SUITE_FENS;
+
+	private static IPosition getPosition(String fen) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(fen);
+		return game_state.getPosition().returnCopy();
+	}
+
+	private static List<String> toStrings(List<IMove> moves) {
+		List<String> result = new ArrayList<String>();
+		for (IMove move : moves)
+			result.add(move.toString());
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * compares both representations in all positions up to the given depth.
+	 */
+	private static void compare(IPosition position, BitboardPosition bitboard,
+			int depth) {
+		String fen = position.toFEN();
+		assertEquals(fen, bitboard.toFEN());
+		assertEquals(fen, position.getZobristKey(), bitboard.getZobristKey());
+		assertEquals(fen, position.getPawnKey(), bitboard.getPawnKey());
+		assertEquals(fen, PieceSquareTables.evaluate(position),
+				position.getPieceSquareScore());
+		assertEquals(fen, position.getPieceSquareScore(),
+				bitboard.getPieceSquareScore());
+		assertEquals(fen, position.isCheckPosition(),
+				bitboard.isCheckPosition());
+		assertEquals(fen, toStrings(position.getPossibleMoves()),
+				toStrings(bitboard.getPossibleMoves()));
+		assertEquals(fen, toStrings(position.generateCaptures()),
+				toStrings(bitboard.generateCaptures()));
+		for (Side side : Side.values()) {
+			assertEquals(fen, position.getKingPos(side),
+					bitboard.getKingPos(side));
+			for (Piece piece : Piece.values())
+				assertEquals(fen,
+						position.getOccupiedSquaresByColorAndType(side, piece),
+						bitboard.getOccupiedSquaresByColorAndType(side, piece));
+		}
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateMoves(moves);
+		for (int i = 0; i < n; i++) {
+			int move = MoveHelper.fromMove(MoveHelper.toMove(moves[i]));
+			assertEquals(fen, moves[i], position.getPseudolegalMove(move));
+			assertEquals(fen, moves[i], bitboard.getPseudolegalMove(move));
+			// the destination is empty or occupied by the opponent
+			int back = MoveHelper.create(MoveHelper.getToSquare(move),
+					MoveHelper.getFromSquare(move), 0);
+			assertEquals(fen, MoveHelper.NO_MOVE,
+					position.getPseudolegalMove(back));
+			assertEquals(fen, MoveHelper.NO_MOVE,
+					bitboard.getPseudolegalMove(back));
+		}
+		// the null move keeps the Zobrist keys consistent
+		if (!position.isCheckPosition()) {
+			position.doNullMove();
+			bitboard.doNullMove();
+			assertEquals(fen, position.toFEN(), bitboard.toFEN());
+			String null_fen = position.toFEN() + " 0 1";
+			assertEquals(fen, getPosition(null_fen).getZobristKey(),
+					position.getZobristKey());
+			assertEquals(fen, position.getZobristKey(),
+					bitboard.getZobristKey());
+			position.undoNullMove();
+			bitboard.undoNullMove();
+			assertEquals(fen, position.toFEN());
+			assertEquals(fen, bitboard.toFEN());
+			assertEquals(fen, position.getZobristKey(),
+					bitboard.getZobristKey());
+		}
+		if (depth == 0)
+			return;
+
+		for (IMove move : new ArrayList<IMove>(position.getPossibleMoves())) {
+			position.doMove(move);
+			bitboard.doMove(move);
+			compare(position, bitboard, depth - 1);
+			position.undoMove(move);
+			bitboard.undoMove(move);
+		}
+		assertEquals(fen, bitboard.toFEN());
+		assertEquals(fen, position.getZobristKey(), bitboard.getZobristKey());
+	}
+
+	@Test
+	public void testPerft() {
+		for (int i = 0; i < FENS.length; i++) {
+			IPosition position = getPosition(FENS[i]);
+			BitboardPosition bitboard = new BitboardPosition(position);
+			assertEquals(FENS[i], Perft.SUITE_NODES[i][2],
+					Perft.perft(position, 3));
+			assertEquals(FENS[i], Perft.SUITE_NODES[i][2],
+					Perft.perft(bitboard, 3));
+		}
+	}
+
+	@Test
+	public void testSameAsPosition() {
+		for (String fen : FENS) {
+			IPosition position = getPosition(fen);
+			compare(position, new BitboardPosition(position), 2);
+		}
+	}
+
+	@Test
+	public void testPotentialAttackers() {
+		IPosition position = getPosition(FENS[1]);
+		BitboardPosition bitboard = new BitboardPosition(position);
+		for (int square : SquareHelper.all_squares)
+			assertEquals(SquareHelper.toString(square),
+					toStrings(position.getPotentialAttackersTo(square)),
+					toStrings(bitboard.getPotentialAttackersTo(square)));
+	}
+}
@@ -0,0 +1,69 @@
+package mitzi.test;
+
+import static org.junit.Assert.assertEquals;
+
+import mitzi.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EvalCacheTest {
+
+	@Before
+	public void setUp() throws Exception {
+		EvalCache.setSize(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		EvalCache.setSize(EvalCache.DEFAULT_SIZE);
+	}
+
+	@Test
+	public void testStoreAndProbe() {
+		long key = 0x123456789ABCDEF0L;
+		assertEquals(EvalCache.NO_SCORE, EvalCache.getScore(key));
+
+		// a score of 0 must be distinguished from an empty entry
+		EvalCache.setScore(key, 0);
+		assertEquals(0, EvalCache.getScore(key));
+		EvalCache.setScore(key, -1234);
+		assertEquals(-1234, EvalCache.getScore(key));
+
+		// a different position in the same entry replaces the score
+		long other = key ^ 0x7000000000000000L;
+		EvalCache.setScore(other, 56);
+		assertEquals(56, EvalCache.getScore(other));
+		assertEquals(EvalCache.NO_SCORE, EvalCache.getScore(key));
+
+		EvalCache.clear();
+		assertEquals(EvalCache.NO_SCORE, EvalCache.getScore(other));
+	}
+
+	@Test
+	public void testDisabled() {
+		EvalCache.setSize(0);
+		assertEquals(0, EvalCache.getSize());
+		EvalCache.setScore(42, 100);
+		assertEquals(EvalCache.NO_SCORE, EvalCache.getScore(42));
+	}
+
+	@Test
+	public void testSameEvaluation() {
+		GameState game_state = new GameState();
+		game_state.setToFEN(Perft.SUITE_FENS[1]);
+		IPosition position = game_state.getPosition();
+
+		BoardAnalyzer analyzer = new BoardAnalyzer();
+		int score = analyzer.eval0(position).score;
+		assertEquals(score, analyzer.eval0(position).score);
+		assertEquals(2, analyzer.eval_cache_probes);
+		assertEquals(1, analyzer.eval_cache_hits);
+
+		EvalCache.setSize(0);
+		assertEquals(score, new BoardAnalyzer().eval0(position).score);
+		assertEquals(EvalCache.NO_SCORE,
+				EvalCache.getScore(position.getZobristKey()));
+	}
+}
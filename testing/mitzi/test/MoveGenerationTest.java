@@ -0,0 +1,190 @@
+package mitzi.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mitzi.*;
+
+import org.junit.Test;
+
+public class MoveGenerationTest {
+
+	/**
+	 * positions with castling, en passant, promotions and checks
+	 */
+	private static final String[] FENS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8" };
+
+	private static IPosition getPosition(String fen) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(fen);
+		return game_state.getPosition().returnCopy();
+	}
+
+	/**
+	 * @return the legal moves of the packed move generator as sorted strings
+	 */
+	private static List<String> getIntMoves(IPosition position) {
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateMoves(moves);
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < n; i++)
+			if (!position.isCheckAfterMove(moves[i]))
+				result.add(MoveHelper.toString(moves[i]));
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return the moves of the legal move generator as sorted strings
+	 */
+	private static List<String> getLegalMoves(IPosition position) {
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateLegalMoves(moves);
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < n; i++)
+			result.add(MoveHelper.toString(moves[i]));
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return the legal moves of getPossibleMoves() as sorted strings
+	 */
+	private static List<String> getMoves(IPosition position) {
+		List<String> result = new ArrayList<String>();
+		for (IMove move : position.getPossibleMoves())
+			result.add(move.toString());
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return the packed captures and promotions of the position, sorted. If
+	 *         all is true, they are taken from all generated moves.
+	 */
+	private static List<Integer> getCaptures(IPosition position, boolean all) {
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = all ? position.generateMoves(moves) : position
+				.generateCaptures(moves);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+			if (MoveHelper.isCapture(moves[i])
+					|| MoveHelper.getPromotion(moves[i]) != null)
+				result.add(moves[i]);
+			else
+				assertTrue(MoveHelper.toString(moves[i]), all);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * compares both move generators in all positions up to the given depth and
+	 * checks, that undoMove(int) restores the position.
+	 */
+	private static void compareGenerators(IPosition position, int depth) {
+		List<String> expected = getMoves(position);
+		assertEquals(position.toFEN(), expected, getIntMoves(position));
+		assertEquals(position.toFEN(), expected, getLegalMoves(position));
+		assertEquals(position.toFEN(), expected,
+				getLegalMoves(new BitboardPosition(position)));
+		assertEquals(position.toFEN(), getCaptures(position, true),
+				getCaptures(position, false));
+		assertEquals(position.toFEN(), getCaptures(position, true),
+				getCaptures(new BitboardPosition(position), false));
+		if (depth == 0)
+			return;
+
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateMoves(moves);
+		String fen = position.toFEN();
+		long key = position.getZobristKey();
+		for (int i = 0; i < n; i++) {
+			if (position.isCheckAfterMove(moves[i]))
+				continue;
+			position.doMove(moves[i]);
+			compareGenerators(position, depth - 1);
+			position.undoMove(moves[i]);
+			assertEquals(fen, position.toFEN());
+			assertEquals(key, position.getZobristKey());
+		}
+	}
+
+	/**
+	 * compares isLegal() with isCheckAfterMove() in all positions up to the
+	 * given depth. isLegal() is called again after the moves have been
+	 * searched, such that the cached pins of a position are tested after
+	 * undoMove().
+	 */
+	private static void compareLegality(IPosition position, int depth) {
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateMoves(moves);
+		for (int i = 0; i < n; i++) {
+			boolean legal = !position.isCheckAfterMove(moves[i]);
+			assertEquals(position.toFEN() + " " + MoveHelper.toString(moves[i]),
+					legal, position.isLegal(moves[i]));
+			if (!legal || depth == 0)
+				continue;
+			position.doMove(moves[i]);
+			compareLegality(position, depth - 1);
+			position.undoMove(moves[i]);
+			assertEquals(legal, position.isLegal(moves[i]));
+		}
+	}
+
+	@Test
+	public void testIsLegal() {
+		for (String fen : FENS) {
+			compareLegality(getPosition(fen), 2);
+			compareLegality(new BitboardPosition(getPosition(fen)), 2);
+		}
+	}
+
+	@Test
+	public void testGeneratorsAgree() {
+		for (String fen : FENS)
+			compareGenerators(getPosition(fen), 2);
+	}
+
+	@Test
+	public void testFlags() {
+		IPosition position = getPosition("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+		position.doMove(new Move("a2a4"));
+
+		int[] moves = new int[MoveHelper.MAX_MOVES];
+		int n = position.generateMoves(moves);
+		int castlings = 0, en_passants = 0;
+		for (int i = 0; i < n; i++) {
+			int move = moves[i];
+			boolean capture = position.getSideFromBoard(MoveHelper
+					.getToSquare(move)) != null;
+			assertEquals(capture || MoveHelper.isEnPassant(move),
+					MoveHelper.isCapture(move));
+			if (MoveHelper.isCastling(move))
+				castlings++;
+			if (MoveHelper.isEnPassant(move))
+				en_passants++;
+		}
+		assertEquals(2, castlings);
+		assertEquals(1, en_passants);
+	}
+
+	@Test
+	public void testPacking() {
+		IMove move = new Move("e7e8q");
+		int packed = MoveHelper.fromMove(move);
+		assertEquals(move, MoveHelper.toMove(packed));
+		assertEquals(move.toString(), MoveHelper.toString(packed));
+		assertEquals(true, MoveHelper.isSameMove(packed, packed
+				| MoveHelper.CAPTURE));
+		assertEquals(null, MoveHelper.toMove(MoveHelper.NO_MOVE));
+	}
+}
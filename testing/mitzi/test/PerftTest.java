@@ -0,0 +1,43 @@
+package mitzi.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import mitzi.*;
+
+import org.junit.Test;
+
+public class PerftTest {
+
+	private static IPosition getPosition(String fen) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(fen);
+		return game_state.getPosition().returnCopy();
+	}
+
+	@Test
+	public void testSuite() {
+		for (int i = 0; i < Perft.SUITE_FENS.length; i++) {
+			IPosition position = getPosition(Perft.SUITE_FENS[i]);
+			for (int depth = 1; depth <= 2; depth++)
+				assertEquals(Perft.SUITE_FENS[i],
+						Perft.SUITE_NODES[i][depth - 1],
+						Perft.perft(position, depth));
+			assertEquals(Perft.SUITE_FENS[i], Perft.SUITE_NODES[i][2],
+					Perft.perft(position, 3, 2));
+		}
+	}
+
+	@Test
+	public void testDivide() {
+		IPosition position = getPosition(Perft.SUITE_FENS[1]);
+		String fen = position.toFEN();
+		Map<IMove, Long> divide = Perft.divide(position, 2, 3);
+
+		assertEquals(48, divide.size());
+		assertEquals(Long.valueOf(43), divide.get(new Move("e1g1")));
+		assertEquals(Long.valueOf(46), divide.get(new Move("d5e6")));
+		assertEquals(fen, position.toFEN());
+	}
+}
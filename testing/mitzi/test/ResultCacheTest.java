@@ -0,0 +1,125 @@
+package mitzi.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mitzi.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+	private static final int THREADS = 16;
+
+	private static final int OPERATIONS = 2000000;
+
+	@Before
+	public void setUp() throws Exception {
+		// a small table, such that the threads write the same buckets
+		ResultCache.setSize(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ResultCache.setSize(ResultCache.DEFAULT_SIZE);
+	}
+
+	/**
+	 * creates an AnalysisResult, where all values depend on the key, such that
+	 * a result can be validated for a given key.
+	 */
+	private static AnalysisResult resultForKey(long key) {
+		int from = 11 + (int) ((key >>> 16) & 0x3F);
+		int to = 11 + (int) ((key >>> 24) & 0x3F);
+		return new AnalysisResult((short) (key >>> 48), (key & 1) == 0, false,
+				(int) ((key >>> 32) & 0x7F), (int) ((key >>> 40) & 0x7F),
+				Flag.values()[(int) ((key >>> 8) & 0xFF) % 3], new Move(from,
+						to));
+	}
+
+	private static void assertValid(long key, AnalysisResult result) {
+		AnalysisResult expected = resultForKey(key);
+		assertEquals(expected.score, result.score);
+		assertEquals(expected.is_stalemate, result.is_stalemate);
+		assertEquals(expected.plys_to_eval0, result.plys_to_eval0);
+		assertEquals(expected.plys_to_seldepth, result.plys_to_seldepth);
+		assertEquals(expected.flag, result.flag);
+		assertEquals(expected.best_move, result.best_move);
+	}
+
+	@Test
+	public void testStoreAndProbe() {
+		long key = 0x123456789ABCDEF0L;
+		ResultCache.setResult(key, resultForKey(key));
+		AnalysisResult result = ResultCache.getResult(key);
+		assertNotNull(result);
+		assertValid(key, result);
+	}
+
+	@Test
+	public void testHashfull() {
+		Random random = new Random(1);
+		for (int i = 0; i < 200000; i++) {
+			long key = random.nextLong();
+			ResultCache.setResult(key, resultForKey(key));
+		}
+		assertTrue(ResultCache.getHashfull() > 0);
+
+		// the entries of the previous search are not counted
+		ResultCache.newSearch();
+		assertEquals(0, ResultCache.getHashfull());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final AtomicLong hits = new AtomicLong();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < THREADS; t++) {
+			final long seed = t;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						for (int i = 0; i < OPERATIONS; i++) {
+							// few different keys, which collide in few buckets
+							long key = random.nextInt(4096) * 0x9E3779B97F4A7C15L;
+							key = (key & ~0x3FFL) | (key & 0x3L);
+							if (random.nextBoolean()) {
+								ResultCache.setResult(key, resultForKey(key));
+							} else {
+								AnalysisResult result = ResultCache
+										.getResult(key);
+								if (result != null) {
+									assertValid(key, result);
+									hits.incrementAndGet();
+								}
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals("corrupt entries returned: " + errors, 0, errors.size());
+		assertTrue(hits.get() > 0);
+	}
+}
@@ -0,0 +1,67 @@
+package mitzi.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import mitzi.*;
+
+import org.junit.Test;
+
+public class StaticExchangeTest {
+
+	/**
+	 * the positions, the moves and their exchange values
+	 */
+	private static final Object[][] CASES = {
+			// undefended pawn
+			{ "1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", "e1e5", 100 },
+			// Nxe5 Nxe5 Rxe5 Bxe5 Qxe5 Qxe5, x-rays on both sides
+			{ "1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1",
+					"d3e5", -225 },
+			// the rook behind the rook wins the pawn
+			{ "3r2k1/8/8/3p4/8/8/3R4/3RK3 w - - 0 1", "d2d5", 100 },
+			// the bishop behind the pawn wins the pawn
+			{ "4k3/8/5p2/4p3/3P4/2B5/8/4K3 w - - 0 1", "d4e5", 100 },
+			// the queen is lost
+			{ "4k3/8/3p4/4n3/8/8/8/4QK2 w - - 0 1", "e1e5", -650 },
+			// undefended and defended knight
+			{ "4k3/8/8/4n3/8/5N2/8/4K3 w - - 0 1", "f3e5", 325 },
+			{ "4k3/8/3p4/4n3/8/5N2/8/4K3 w - - 0 1", "f3e5", 0 },
+			{ "4k3/3n4/8/4n3/8/5N2/8/4K3 w - - 0 1", "f3e5", 0 },
+			// en passant
+			{ "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6", 100 },
+			// promotion with capture
+			{ "1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "a7b8Q", 1200 },
+			// the defended piece cannot be captured by the king
+			{ "4k3/8/8/8/8/8/3n4/2b1K3 w - - 0 1", "e1d2", -19675 } };
+
+	private static IPosition getPosition(String fen) {
+		GameState game_state = new GameState();
+		game_state.setToFEN(fen);
+		return game_state.getPosition().returnCopy();
+	}
+
+	@Test
+	public void testExchanges() {
+		for (Object[] c : CASES) {
+			IPosition position = getPosition((String) c[0]);
+			IMove move = new Move((String) c[1]);
+			String message = c[0] + " " + c[1];
+			assertEquals(message, c[2], StaticExchange.see(position, move));
+			assertEquals(message, c[2], StaticExchange.see(
+					new BitboardPosition(position), move));
+		}
+	}
+
+	@Test
+	public void testPackedMoves() {
+		for (Object[] c : CASES) {
+			IPosition position = getPosition((String) c[0]);
+			int move = position.getPseudolegalMove(MoveHelper
+					.fromMove(new Move((String) c[1])));
+			assertTrue((String) c[1], move != MoveHelper.NO_MOVE);
+			assertEquals(c[0] + " " + c[1], c[2],
+					StaticExchange.see(position, move));
+		}
+	}
+}